@@ -0,0 +1,427 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Parte comune dei motori di simulazione Fluid (double) e FloatFluid (float): parametri del fluido,
+// vista a oggetti delle particelle, griglia delle celle, lista dei neighbor, scheduler, riordino lungo
+// la curva di Morton, tempi delle fasi, snapshot per il rendering, campo di densitá e sequenza dei
+// passaggi della pipeline fusa. Le sottoclassi forniscono l'accesso al proprio store e i passaggi
+// sulle particelle nella propria precisione
+abstract class AbstractFluid implements Simulation, Checkpointable {
+    private static final int DENSITY_TILE_SIZE = 16;
+    private static final int DENSE_GRID_CELLS_PER_PARTICLE = 16;
+    // coordinate delle celle limitate a [-MAX_CELL, MAX_CELL) nelle chiavi del riordino
+    private static final int MAX_CELL = 1 << 30;
+    protected final int boxWidth;
+    protected final int boxHeight;
+    protected final int gridWidth;
+    protected final int gridHeight;
+    protected final int radius;
+    protected final ArrayList<Particle> particles;
+    protected final ArrayList<Particle> spareParticles = new ArrayList<>();
+    protected SpatialGrid cellGrid;
+    // griglia usata solo per campionare il campo di densitá, ricostruita a ogni campionamento
+    private SpatialGrid densityGrid;
+    protected boolean sparseGrid = false;
+    protected NeighborList neighborList = new NeighborList(1.0);
+    protected TileScheduler scheduler = new TileScheduler(0, 8);
+    protected long substepCount = 0;
+    private int reorderInterval = 0;
+    private long[] reorderKeys = new long[0];
+    private long[] reorderCells = new long[0];
+    private int[] reorderOrder = new int[0];
+    private final long[] phaseTotals = new long[Phase.values().length];
+    protected final double density;
+    protected final double pressureConstant;
+    protected final double viscosityConstant;
+    protected final Vector2D gravity;
+
+    // Costruttore, la griglia delle celle va creata dalla sottoclasse dopo lo store
+    protected AbstractFluid(ArrayList<Particle> particles, double density, double pressureConstant, double viscosityConstant, Vector2D gravity, int gridWidth, int gridHeight) {
+        this.particles = particles;
+        this.density = density;
+        this.pressureConstant = pressureConstant;
+        this.viscosityConstant = viscosityConstant;
+        this.gravity = gravity;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.radius = particles.get(0).radius;
+        this.boxWidth = (int) (gridWidth * particles.get(0).smoothRadius);
+        this.boxHeight = (int) (gridHeight * particles.get(0).smoothRadius);
+    }
+
+    // Smoothing radius comune delle particelle
+    protected abstract double smoothRadius();
+
+    // Massimo smoothing radius tra le particelle, diverso da smoothRadius solo con i raggi per particella
+    protected double maxSmoothRadius() {
+        return smoothRadius();
+    }
+
+    // Stato della particella i dello store
+    protected abstract double positionX(int i);
+
+    protected abstract double positionY(int i);
+
+    protected abstract double velocityX(int i);
+
+    protected abstract double velocityY(int i);
+
+    // Indice di Morton della cella della particella i (vedi cellMortonIndex), usato come chiave del riordino
+    protected abstract long reorderCell(int i);
+
+    // Metodo per permutare lo store, con la convenzione di ParticleStore.permute
+    protected abstract void permuteStore(int[] order);
+
+    // Metodo per sapere se la lista dei neighbor é valida per lo store attuale
+    protected abstract boolean isNeighborListValid();
+
+    // Metodo per ricostruire griglia delle celle e lista dei neighbor
+    protected abstract void buildNeighborList();
+
+    // Passaggi della pipeline fusa: densitá e pressione, forze di interazione e gravitá,
+    // integrazione con il controllo dello spostamento per la lista dei neighbor
+    protected abstract void fusedDensityPressure();
+
+    protected abstract void fusedForces(Vector2D gravity);
+
+    protected abstract void fusedIntegration(int windowWidth, int windowHeight, double dt);
+
+    // Metodo per ricopiare lo stato della particella i nell'oggetto Particle corrispondente
+    protected abstract void copyToParticle(int i, Particle p);
+
+    // Metodo per creare l'oggetto Particle della particella i, quando la vista a oggetti cresce
+    protected abstract Particle createParticle(int i);
+
+    // Posizione di ciascuna particella nella snapshot: l'id, stabile nei riordini, oppure null per
+    // usare l'ordine dello store
+    protected abstract int[] snapshotIds();
+
+    // Contributo della particella j alla densitá in un punto a distanza al quadrato distSquared,
+    // usato per campionare il campo di densitá
+    protected abstract double densityContribution(int j, double distSquared);
+
+    // Metodo per costruire grid sulle particelle correnti dello store
+    protected abstract void buildGrid(SpatialGrid grid);
+
+    // Helper method per creare la griglia delle celle: il lato delle celle é pari al raggio di
+    // costruzione della lista dei neighbor (smoothRadius + skin), cosí basta il quadrato 3x3
+    protected SpatialGrid createCellGrid(double skin) {
+        return createCellGrid(smoothRadius() + skin, boxWidth, boxHeight, getParticleCount(), sparseGrid);
+    }
+
+    // Helper method per scegliere la griglia: quella sparsa viene usata se richiesta o se quella densa
+    // avrebbe piú di DENSE_GRID_CELLS_PER_PARTICLE celle per particella, cioé se il fluido occupa una
+    // piccola parte del box e la maggior parte delle celle resterebbe vuota
+    static SpatialGrid createCellGrid(double cellSize, int boxWidth, int boxHeight, int count, boolean sparse) {
+        int gridWidth = (int) Math.ceil(boxWidth / cellSize);
+        int gridHeight = (int) Math.ceil(boxHeight / cellSize);
+        if (sparse || (long) gridWidth * gridHeight > (long) DENSE_GRID_CELLS_PER_PARTICLE * count) {
+            return new HashedCellGrid(cellSize);
+        }
+        return new CellGrid(cellSize, gridWidth, gridHeight);
+    }
+
+    // Metodo per usare la griglia sparsa anche quando quella densa sarebbe piccola
+    public void setSparseGrid(boolean enabled) {
+        this.sparseGrid = enabled;
+        this.cellGrid = createCellGrid(neighborList.getSkin());
+        this.densityGrid = null;
+        neighborList.invalidate();
+    }
+
+    // Metodo per sapere se la griglia in uso é quella sparsa
+    public boolean isSparseGridActive() {
+        return cellGrid instanceof HashedCellGrid;
+    }
+
+    // Metodo per impostare lo skin della lista dei neighbor: valori piú grandi riducono il numero
+    // di ricostruzioni ma aumentano il numero di coppie visitate a ogni passaggio
+    public void setNeighborSkin(double skin) {
+        this.neighborList = new NeighborList(skin, neighborList.isHalf());
+        this.cellGrid = createCellGrid(skin);
+    }
+
+    // Metodo per sostituire lo scheduler dei passaggi paralleli, il precedente viene chiuso
+    public void setScheduler(TileScheduler scheduler) {
+        this.scheduler.shutdown();
+        this.scheduler = scheduler;
+    }
+
+    // Metodo per ottenere lo scheduler, da chiudere con shutdown quando il fluido non serve piú
+    public TileScheduler getScheduler() {
+        return scheduler;
+    }
+
+    // Metodo per impostare ogni quanti substep le particelle vengono riordinate in memoria
+    // lungo la curva di Morton, 0 disabilita il riordino
+    public void setReorderInterval(int substeps) {
+        this.reorderInterval = substeps;
+    }
+
+    // Helper method che intercala i bit delle coordinate della cella (x nei bit pari, y nei dispari)
+    // ottenendo l'indice della cella lungo la curva di Morton (Z-order)
+    static long mortonIndex(int cellX, int cellY) {
+        return spreadBits(cellX) | (spreadBits(cellY) << 1);
+    }
+
+    // Helper method per l'indice di Morton di una cella con coordinate anche negative (particelle
+    // fuori dal box nella griglia sparsa): le coordinate vengono spostate di MAX_CELL, cosí l'ordine
+    // lungo ciascun asse é conservato e l'indice occupa 62 bit
+    static long cellMortonIndex(int cellX, int cellY) {
+        return mortonIndex(clampCell(cellX) + MAX_CELL, clampCell(cellY) + MAX_CELL);
+    }
+
+    private static int clampCell(int cell) {
+        return Math.max(-MAX_CELL, Math.min(cell, MAX_CELL - 1));
+    }
+
+    private static long spreadBits(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    // Metodo da chiamare all'inizio di ogni substep: esegue il riordino periodico e conta il substep.
+    // Ritorna l'istante da cui misurare la fase successiva
+    protected long startSubstep(long startTime) {
+        if (reorderInterval > 0 && substepCount % reorderInterval == 0) {
+            reorderParticles();
+            startTime = endPhase(Phase.REORDER, startTime);
+        }
+        substepCount++;
+        return startTime;
+    }
+
+    // Metodo per riordinare le particelle in memoria secondo l'indice di Morton della loro cella,
+    // cosí particelle vicine nello spazio sono vicine anche in memoria e i loop sui neighbor
+    // leggono linee di cache consecutive. L'indice di Morton occupa fino a 62 bit e non entra in una
+    // chiave insieme all'indice della particella, quindi le celle occupate vengono prima ordinate e
+    // numerate: ogni chiave contiene il rango della cella nei 32 bit alti e l'indice della particella
+    // in quelli bassi, e l'ordinamento per (Morton, indice) é esatto e stabile.
+    // Anche la vista a oggetti viene permutata, e griglia e lista dei neighbor vengono invalidate
+    private void reorderParticles() {
+        int count = getParticleCount();
+        if (reorderKeys.length < count) {
+            reorderKeys = new long[count + count / 8];
+            reorderCells = new long[count + count / 8];
+            reorderOrder = new int[count + count / 8];
+        }
+        final long[] keys = reorderKeys;
+        final long[] cells = reorderCells;
+        final int[] order = reorderOrder;
+        scheduler.forRange(0, count, i -> {
+            keys[i] = reorderCell(i);
+        });
+        System.arraycopy(keys, 0, cells, 0, count);
+        scheduler.invoke(() -> Arrays.parallelSort(cells, 0, count));
+        int unique = 0;
+        for (int k = 0; k < count; k++) {
+            if (unique == 0 || cells[k] != cells[unique - 1]) {
+                cells[unique++] = cells[k];
+            }
+        }
+        final int cellTotal = unique;
+        scheduler.forRange(0, count, i -> {
+            keys[i] = ((long) Arrays.binarySearch(cells, 0, cellTotal, keys[i]) << 32) | i;
+        });
+        scheduler.invoke(() -> Arrays.parallelSort(keys, 0, count));
+        scheduler.forRange(0, count, k -> {
+            order[k] = (int) keys[k];
+        });
+        permuteStore(order);
+
+        resizeView();
+        Particle[] view = particles.toArray(new Particle[0]);
+        for (int k = 0; k < count; k++) {
+            particles.set(k, view[order[k]]);
+        }
+        neighborList.invalidate();
+    }
+
+    // Helper method che accumula il tempo trascorso da startTime nel totale della fase indicata
+    // e lo passa al registro delle metriche. Ritorna l'istante di fine della fase
+    protected long endPhase(Phase phase, long startTime) {
+        long now = System.nanoTime();
+        phaseTotals[phase.ordinal()] += now - startTime;
+        Metrics.recordPhase(phase, now - startTime, getParticleCount());
+        return now;
+    }
+
+    // Metodo di update con la pipeline fusa, tre passaggi sulle particelle invece di cinque:
+    // densitá e pressione, forze e gravitá, integrazione e controllo dello spostamento.
+    // Integrazione e forze restano separate perché le forze leggono posizione e velocitá dei neighbor
+    // prima dell'aggiornamento. I tempi vengono accumulati nella fase che apre ciascun passaggio
+    protected void updateFused(int windowWidth, int windowHeight, double dt, Vector2D gravity, long startTime) {
+        // lo spostamento é giá stato controllato durante l'integrazione del substep precedente
+        if (!isNeighborListValid()) {
+            buildNeighborList();
+        }
+        startTime = endPhase(Phase.NEIGHBORS, startTime);
+
+        fusedDensityPressure();
+        startTime = endPhase(Phase.DENSITY, startTime);
+
+        fusedForces(gravity);
+        startTime = endPhase(Phase.FORCES, startTime);
+
+        fusedIntegration(windowWidth, windowHeight, dt);
+        endPhase(Phase.INTEGRATION, startTime);
+    }
+
+    // Metodo per ottenere il tempo totale (in nanosecondi) speso in una fase dall'ultimo reset
+    @Override
+    public long getPhaseTotal(Phase phase) {
+        return phaseTotals[phase.ordinal()];
+    }
+
+    // Metodo per azzerare i tempi totali delle fasi
+    @Override
+    public void resetPhaseTotals() {
+        Arrays.fill(phaseTotals, 0);
+    }
+
+    // Metodo per ottenere il numero di substep eseguiti dalla creazione del fluido
+    @Override
+    public long getSubstepCount() {
+        return substepCount;
+    }
+
+    // Metodo per riprendere il conteggio dei substep da un checkpoint, cosí il riordino periodico
+    // mantiene la stessa cadenza della simulazione originale
+    public void setSubstepCount(long substepCount) {
+        this.substepCount = substepCount;
+    }
+
+    // Metodo per riprendere da un checkpoint lo stato che non passa dagli oggetti Particle usati per
+    // creare il fluido: conteggio dei substep e id delle particelle (le sottoclassi aggiungono il proprio)
+    @Override
+    public void restoreState(Checkpoint checkpoint) {
+        setSubstepCount(checkpoint.substepCount);
+    }
+
+    // Metodo per ricopiare lo stato dello store negli oggetti Particle,
+    // eseguito una volta per frame e non per substep
+    protected void syncParticles() {
+        resizeView();
+        scheduler.forRange(0, getParticleCount(), i -> {
+            copyToParticle(i, particles.get(i));
+        });
+    }
+
+    // Helper method per allineare la lunghezza della vista a oggetti al numero di particelle,
+    // che cambia con emettitori e pozzi e quando le particelle migrano tra i processi della simulazione
+    // distribuita. Gli oggetti tolti dalla vista vengono conservati e riusati, cosí a regime non si alloca
+    protected void resizeView() {
+        int count = getParticleCount();
+        while (particles.size() > count) {
+            spareParticles.add(particles.remove(particles.size() - 1));
+        }
+        while (particles.size() < count) {
+            if (spareParticles.isEmpty()) {
+                particles.add(createParticle(particles.size()));
+            } else {
+                particles.add(spareParticles.remove(spareParticles.size() - 1));
+            }
+        }
+    }
+
+    // Metodo per ottenere la lista delle particelle come oggetti.
+    // La lista é una vista dello stato aggiornata alla fine di ogni newStep, e va letta solo
+    // dal thread che esegue la simulazione; il rendering usa invece writeSnapshot
+    public ArrayList<Particle> getParticles() {
+        return particles;
+    }
+
+    // Metodo per otterenere le dimensioni del box di simulazione, usato dall'oggetto rendering
+    @Override
+    public Vector2D returnBoundary() {
+        return new Vector2D(boxWidth, boxHeight);
+    }
+
+    // Metodo per copiare posizioni e velocitá correnti in una snapshot per il rendering
+    @Override
+    public void writeSnapshot(FrameSnapshot snapshot) {
+        int count = getParticleCount();
+        snapshot.ensureCapacity(count);
+        snapshot.count = count;
+        snapshot.radius = radius;
+        final float[] positions = snapshot.positions;
+        final float[] velocities = snapshot.velocities;
+        final int[] id = snapshotIds();
+        scheduler.forRange(0, count, i -> {
+            int k = id != null ? id[i] : i;
+            positions[2 * k] = (float) positionX(i);
+            positions[2 * k + 1] = (float) positionY(i);
+            velocities[2 * k] = (float) velocityX(i);
+            velocities[2 * k + 1] = (float) velocityY(i);
+        });
+    }
+
+    // Metodo per campionare il campo di densitá del fluido su una griglia con un campione ogni
+    // resolution pixel, scrivendolo nella snapshot. I campioni vengono divisi in tile quadrate valutate
+    // in parallelo, e per ogni campione si visitano solo le particelle delle 3x3 celle circostanti.
+    // Le celle sono quelle di densityGrid, ricostruita qui: la griglia dei neighbor viene ricostruita
+    // solo con la lista, e dopo emettitori, pozzi e fusioni i suoi indici non corrispondono piú allo
+    // store. Il lato delle celle é il massimo smoothing radius, cosí le 3x3 celle contengono anche
+    // le particelle unite, con raggio maggiore. I buffer della snapshot vengono riusati tra un frame e l'altro
+    @Override
+    public void writeDensityField(FrameSnapshot snapshot, int resolution, int windowWidth, int windowHeight) {
+        final int fieldWidth = (windowWidth + resolution - 1) / resolution;
+        final int fieldHeight = (windowHeight + resolution - 1) / resolution;
+        snapshot.ensureDensityCapacity(fieldWidth * fieldHeight);
+        snapshot.densityWidth = fieldWidth;
+        snapshot.densityHeight = fieldHeight;
+        snapshot.densityResolution = resolution;
+
+        final float[] field = snapshot.density;
+        final int tileSize = DENSITY_TILE_SIZE;
+        final int tilesX = (fieldWidth + tileSize - 1) / tileSize;
+        final int tilesY = (fieldHeight + tileSize - 1) / tileSize;
+        double cellSize = maxSmoothRadius();
+        if (densityGrid == null || densityGrid.getCellSize() != cellSize) {
+            densityGrid = createCellGrid(cellSize, boxWidth, boxHeight, getParticleCount(), sparseGrid);
+        }
+        final SpatialGrid cellGrid = densityGrid;
+        buildGrid(cellGrid);
+        final int[] sortedIndices = cellGrid.sortedIndices();
+
+        double maxDensity = scheduler.max(0, tilesX * tilesY, tile -> {
+            int startX = (tile % tilesX) * tileSize;
+            int startY = (tile / tilesX) * tileSize;
+            int endX = Math.min(startX + tileSize, fieldWidth);
+            int endY = Math.min(startY + tileSize, fieldHeight);
+            double tileMax = 0;
+            for (int sy = startY; sy < endY; sy++) {
+                double y = (sy + 0.5) * resolution;
+                int cellY = cellGrid.cellY(y);
+                for (int sx = startX; sx < endX; sx++) {
+                    double x = (sx + 0.5) * resolution;
+                    int cellX = cellGrid.cellX(x);
+                    double densitySum = 0;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int cell = cellGrid.getCellIndex(cellX + dx, cellY + dy);
+                            if (cell < 0) continue;
+                            int start = cellGrid.cellStart(cell);
+                            int end = start + cellGrid.cellCount(cell);
+                            for (int k = start; k < end; k++) {
+                                int j = sortedIndices[k];
+                                double rx = positionX(j) - x;
+                                double ry = positionY(j) - y;
+                                densitySum += densityContribution(j, rx * rx + ry * ry);
+                            }
+                        }
+                    }
+                    field[sy * fieldWidth + sx] = (float) densitySum;
+                    if (densitySum > tileMax) tileMax = densitySum;
+                }
+            }
+            return tileMax;
+        });
+        snapshot.maxDensity = (float) maxDensity;
+    }
+}
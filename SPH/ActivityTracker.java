@@ -0,0 +1,201 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Sistema di attivitá per le regioni ferme del fluido: una particella che resta sotto le soglie di
+// velocitá e accelerazione per sleepSteps substep consecutivi viene addormentata. Da quel momento
+// densitá, pressione, forze e integrazione non vengono piú calcolate per lei: posizione, densitá e
+// pressione restano quelle dell'ultimo substep e i vicini svegli continuano a leggerle.
+// Il contatore dei substep tranquilli é ParticleStore.quietSteps, cosí segue le particelle nei riordini.
+// Durante l'integrazione le celle di lato smoothRadius vengono marcate come disturbate
+// quando contengono una particella sveglia sopra le soglie di risveglio (il doppio di quelle di riposo)
+// o una particella sveglia che ha appena cambiato cella; dopo l'integrazione ogni particella
+// addormentata con una cella disturbata tra le 3 x 3 attorno alla propria viene risvegliata,
+// perché un vicino entro smoothRadius si sta muovendo o sta cambiando le forze che sente.
+// Le celle disturbate sono le chiavi di una tabella hash ad indirizzamento aperto, come in
+// HashedCellGrid: la tabella é dimensionata sul numero di particelle e non sull'area del box, le
+// particelle fuori dalla finestra restano nelle proprie celle invece di finire su quelle di bordo,
+// e a fine substep vengono azzerate solo le posizioni usate, elencate in touched
+class ActivityTracker {
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+    // coordinate delle celle limitate a [-MAX_CELL, MAX_CELL), cosí la chiave non coincide mai con EMPTY
+    private static final int MAX_CELL = 1 << 30;
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 64;
+
+    private final double sleepSpeedSquared;
+    private final double sleepAccelerationSquared;
+    private final double wakeSpeedSquared;
+    private final double wakeAccelerationSquared;
+    private final int sleepSteps;
+    private final double cellSize;
+    private long[] disturbed = new long[0];
+    private int[] touched = new int[0];
+    private final int[] touchedCount = new int[1];
+    private int hashShift;
+    // true se durante l'ultima integrazione la tabella si é riempita: al risveglio tutte le
+    // particelle vengono svegliate, e la tabella ingrandita prima del substep successivo
+    private volatile boolean overflow = false;
+
+    // Costruttore, cellSize é il lato delle celle e deve essere almeno pari a smoothRadius
+    public ActivityTracker(double sleepSpeed, double sleepAcceleration, int sleepSteps, double cellSize) {
+        this.sleepSpeedSquared = sleepSpeed * sleepSpeed;
+        this.sleepAccelerationSquared = sleepAcceleration * sleepAcceleration;
+        this.wakeSpeedSquared = 4 * sleepSpeedSquared;
+        this.wakeAccelerationSquared = 4 * sleepAccelerationSquared;
+        this.sleepSteps = Math.max(1, sleepSteps);
+        this.cellSize = cellSize;
+    }
+
+    // Metodo per sapere se la particella i é addormentata
+    public boolean isAsleep(ParticleStore store, int i) {
+        return store.quietSteps[i] >= sleepSteps;
+    }
+
+    // Metodo da chiamare prima dell'integrazione: dimensiona la tabella per count particelle, ognuna
+    // delle quali disturba al piú due celle, con fattore di carico al piú 1/2
+    public void prepare(int count) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, 4 * count - 1)) << 1);
+        if (overflow) {
+            capacity = Math.max(capacity, 2 * disturbed.length);
+        }
+        if (disturbed.length >= capacity) return;
+        disturbed = new long[capacity];
+        Arrays.fill(disturbed, EMPTY);
+        touched = new int[capacity];
+        touchedCount[0] = 0;
+        hashShift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    // Metodo che integra la particella i se é sveglia e ne aggiorna lo stato di attivitá.
+    // Ritorna il quadrato dell'accelerazione integrata, 0 per le particelle addormentate
+    public double update(ParticleStore store, int i, int windowWidth, int windowHeight, double dt) {
+        if (store.quietSteps[i] >= sleepSteps) return 0;
+        long previousCell = key(store.positionX[i], store.positionY[i]);
+        double accelerationSquared = store.update(i, windowWidth, windowHeight, dt);
+        double speedSquared = store.velocityX[i] * store.velocityX[i] + store.velocityY[i] * store.velocityY[i];
+        long cell = key(store.positionX[i], store.positionY[i]);
+
+        if (speedSquared < sleepSpeedSquared && accelerationSquared < sleepAccelerationSquared) {
+            if (++store.quietSteps[i] >= sleepSteps) {
+                store.velocityX[i] = 0;
+                store.velocityY[i] = 0;
+            }
+        } else {
+            store.quietSteps[i] = 0;
+        }
+        if (speedSquared > wakeSpeedSquared || accelerationSquared > wakeAccelerationSquared) {
+            mark(cell);
+        }
+        if (cell != previousCell) {
+            mark(previousCell);
+            mark(cell);
+        }
+        return accelerationSquared;
+    }
+
+    // Metodo per risvegliare le particelle vicine alle celle disturbate durante l'ultima integrazione
+    public void wake(ParticleStore store, TileScheduler scheduler) {
+        final boolean wakeAll = overflow;
+        if (wakeAll || touchedCount[0] > 0) {
+            scheduler.forRange(0, store.count, i -> {
+                if (store.quietSteps[i] < sleepSteps) return;
+                if (wakeAll) {
+                    store.quietSteps[i] = 0;
+                    return;
+                }
+                int cellX = cell(store.positionX[i]);
+                int cellY = cell(store.positionY[i]);
+                for (int y = cellY - 1; y <= cellY + 1; y++) {
+                    for (int x = cellX - 1; x <= cellX + 1; x++) {
+                        if (contains(x, y)) {
+                            store.quietSteps[i] = 0;
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+        // si azzerano solo le posizioni occupate durante l'ultima integrazione
+        int touchedTotal = Math.min(touchedCount[0], touched.length);
+        for (int t = 0; t < touchedTotal; t++) {
+            disturbed[touched[t]] = EMPTY;
+        }
+        touchedCount[0] = 0;
+        prepare(store.count);
+        overflow = false;
+    }
+
+    // Metodo per calcolare la frazione di particelle sveglie
+    public double activeFraction(ParticleStore store) {
+        int awake = 0;
+        for (int i = 0; i < store.count; i++) {
+            if (store.quietSteps[i] < sleepSteps) awake++;
+        }
+        return store.count == 0 ? 1 : (double) awake / store.count;
+    }
+
+    // Helper method per ottenere la coordinata della cella, limitata a [-MAX_CELL, MAX_CELL)
+    private int cell(double position) {
+        return (int) Math.max(-MAX_CELL, Math.min(Math.floor(position / cellSize), MAX_CELL - 1));
+    }
+
+    private long key(double x, double y) {
+        return key(cell(x), cell(y));
+    }
+
+    // Helper method per ottenere la chiave della cella, le coordinate spostate di MAX_CELL affiancate in un long
+    private static long key(int cellX, int cellY) {
+        return ((long) (cellX + MAX_CELL) << 31) | (cellY + MAX_CELL);
+    }
+
+    // Posizione iniziale della chiave nella tabella, con hashing moltiplicativo sui bit alti
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> hashShift);
+    }
+
+    // Helper method per sapere se la cella (cellX, cellY) é disturbata, chiamato quando la tabella
+    // non viene piú modificata
+    private boolean contains(int cellX, int cellY) {
+        if (cellX < -MAX_CELL || cellY < -MAX_CELL || cellX >= MAX_CELL || cellY >= MAX_CELL) return false;
+        long key = key(cellX, cellY);
+        int mask = disturbed.length - 1;
+        for (int slot = hash(key); ; slot = (slot + 1) & mask) {
+            long current = disturbed[slot];
+            if (current == key) return true;
+            if (current == EMPTY) return false;
+        }
+    }
+
+    // Metodo per marcare la cella come disturbata da piú thread. Ogni nuova cella prenota un posto in
+    // touched, che ha la stessa lunghezza della tabella: oltre metá tabella si smette di inserire e
+    // si segnala l'overflow, cosí il probing termina sempre
+    private void mark(long key) {
+        long[] disturbed = this.disturbed;
+        int mask = disturbed.length - 1;
+        int slot = hash(key);
+        while (true) {
+            long current = (long) LONG_ARRAY.getVolatile(disturbed, slot);
+            if (current == key) return;
+            if (current == EMPTY) {
+                int position = (int) INT_ARRAY.getAndAdd(touchedCount, 0, 1);
+                if (position >= disturbed.length / 2) {
+                    INT_ARRAY.getAndAdd(touchedCount, 0, -1);
+                    overflow = true;
+                    return;
+                }
+                if (LONG_ARRAY.compareAndSet(disturbed, slot, EMPTY, key)) {
+                    touched[position] = slot;
+                    return;
+                }
+                // un altro thread ha occupato la posizione: il posto prenotato non viene rilasciato
+                // (i posti giá presi dopo di lui uscirebbero da touchedCount) e punta alla stessa
+                // posizione, che viene azzerata due volte senza conseguenze
+                touched[position] = slot;
+                continue;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+}
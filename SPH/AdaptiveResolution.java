@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+// Risoluzione adattiva: nelle regioni interne e calme del fluido coppie di particelle uguali vengono
+// unite in una particella di massa doppia, mentre vicino alla superficie libera e ai bordi le particelle
+// unite vengono divise di nuovo in due. Lo smoothing radius segue la massa, h = h0 * sqrt(m / m0),
+// cosí in 2D ogni particella vede circa lo stesso numero di neighbor a qualunque livello.
+// Unione e divisione conservano massa, quantitá di moto e centro di massa; la massa resta un multiplo
+// di m0 per una potenza di due, fino a maxMerge * m0.
+// La superficie viene riconosciuta dallo scostamento medio dei neighbor entro (h_i + h_j) / 2,
+// in unitá di h_i: circa 0 all'interno del fluido e circa 0.4 su una superficie piana, dove i
+// neighbor stanno tutti da un lato. Le soglie di unione sono piú strette di quelle di divisione,
+// cosí una particella appena unita non viene subito divisa e viceversa.
+// L'aggiornamento avviene ogni INTERVAL substep, alla fine del substep, quando lista dei neighbor
+// e densitá sono coerenti con gli indici dello store; le particelle vengono aggiunte e rimosse
+// attraverso il ParticlePool, quindi dopo un aggiornamento griglia e lista vanno ricostruite
+class AdaptiveResolution {
+    private static final int INTERVAL = 25;
+    private static final double SPLIT_SURFACE = 0.25;
+    private static final double MERGE_SURFACE = 0.1;
+    // distanze dai bordi della finestra, in unitá di h_i
+    private static final double SPLIT_WALL_DISTANCE = 1.5;
+    private static final double MERGE_WALL_DISTANCE = 3.0;
+    private static final int MIN_MERGE_NEIGHBORS = 6;
+    private static final byte KEEP = 0;
+    private static final byte MERGE = 1;
+    private static final byte SPLIT = 2;
+
+    private final double baseMass;
+    private final double baseRadius;
+    private final double spacing;
+    private final double maxMass;
+    private final double calmSpeedSquared;
+    private int steps = 0;
+    private byte[] state = new byte[0];
+    private double[] normalX = new double[0];
+    private double[] normalY = new double[0];
+    private int[] removals = new int[0];
+    private long merges = 0;
+    private long splits = 0;
+
+    // Costruttore, baseMass e baseRadius sono massa e smoothing radius delle particelle iniziali,
+    // spacing la loro distanza. maxMerge é il massimo numero di particelle iniziali riunite in una,
+    // calmSpeed la massima velocitá relativa tra neighbor per considerare calma una regione
+    public AdaptiveResolution(double baseMass, double baseRadius, double spacing, int maxMerge, double calmSpeed) {
+        this.baseMass = baseMass;
+        this.baseRadius = baseRadius;
+        this.spacing = spacing;
+        this.maxMass = baseMass * Integer.highestOneBit(Math.max(1, maxMerge));
+        this.calmSpeedSquared = calmSpeed * calmSpeed;
+    }
+
+    // Numero totale di unioni
+    public long getMerges() {
+        return merges;
+    }
+
+    // Numero totale di divisioni
+    public long getSplits() {
+        return splits;
+    }
+
+    // Smoothing radius di una particella di massa mass
+    public double radiusOf(double mass) {
+        return baseRadius * Math.sqrt(mass / baseMass);
+    }
+
+    // Metodo chiamato alla fine di ogni substep, ritorna true se lo store é cambiato
+    public boolean update(ParticleStore store, ParticlePool pool, NeighborList neighborList, TileScheduler scheduler, int windowWidth, int windowHeight) {
+        if (++steps < INTERVAL) return false;
+        steps = 0;
+        int count = store.count;
+        if (state.length < count) {
+            state = new byte[count + count / 8];
+            normalX = new double[count + count / 8];
+            normalY = new double[count + count / 8];
+            removals = new int[count + count / 8];
+        }
+        scheduler.forRange(0, count, i -> classify(store, neighborList, i, windowWidth, windowHeight));
+
+        // con il pool pieno si smette di dividere ma si continua a unire: le unioni sono ció che
+        // libera posti nel pool per le divisioni dei substep successivi
+        int removed = 0;
+        boolean poolFull = false;
+        for (int i = 0; i < count; i++) {
+            if (state[i] == SPLIT) {
+                if (poolFull) continue;
+                poolFull = !split(store, pool, i);
+            } else if (state[i] == MERGE) {
+                int j = findPartner(store, neighborList, i);
+                if (j < 0) continue;
+                merge(store, i, j);
+                state[j] = KEEP;
+                removals[removed++] = j;
+            }
+        }
+        // le rimozioni avvengono dall'indice piú alto, cosí la particella spostata al posto di quella
+        // rimossa non é mai un'altra particella da rimuovere
+        Arrays.sort(removals, 0, removed);
+        for (int k = removed - 1; k >= 0; k--) {
+            pool.remove(store, removals[k]);
+        }
+
+        if (removed == 0 && store.count == count) return false;
+        final double[] radii = store.smoothRadii;
+        store.maxSmoothRadius = scheduler.max(0, store.count, i -> radii[i]);
+        return true;
+    }
+
+    // Helper method che decide se unire, dividere o lasciare la particella i, e salva la direzione
+    // media dei neighbor (la normale alla superficie) per la divisione
+    private void classify(ParticleStore store, NeighborList neighborList, int i, int windowWidth, int windowHeight) {
+        final double[] radii = store.smoothRadii;
+        int[] neighbors = neighborList.indices();
+        double xi = store.positionX[i];
+        double yi = store.positionY[i];
+        double hi = radii[i];
+        double sumX = 0;
+        double sumY = 0;
+        double maxRelativeSpeedSquared = 0;
+        int found = 0;
+        int end = neighborList.end(i);
+        for (int k = neighborList.start(i); k < end; k++) {
+            int j = neighbors[k];
+            if (j == i) continue;
+            double rx = store.positionX[j] - xi;
+            double ry = store.positionY[j] - yi;
+            double h = 0.5 * (hi + radii[j]);
+            if (rx * rx + ry * ry > h * h) continue;
+            sumX += rx;
+            sumY += ry;
+            double dvx = store.velocityX[j] - store.velocityX[i];
+            double dvy = store.velocityY[j] - store.velocityY[i];
+            maxRelativeSpeedSquared = Math.max(maxRelativeSpeedSquared, dvx * dvx + dvy * dvy);
+            found++;
+        }
+        double length = Math.sqrt(sumX * sumX + sumY * sumY);
+        double surface = found == 0 ? 1 : length / found / hi;
+        double wall = Math.min(Math.min(xi, windowWidth - xi), Math.min(yi, windowHeight - yi)) / hi;
+        normalX[i] = length > 0 ? sumX / length : 0;
+        normalY[i] = length > 0 ? sumY / length : 0;
+
+        double mass = store.mass[i];
+        if (surface > SPLIT_SURFACE || wall < SPLIT_WALL_DISTANCE) {
+            state[i] = mass > 1.5 * baseMass ? SPLIT : KEEP;
+        } else if (surface < MERGE_SURFACE && wall > MERGE_WALL_DISTANCE && found >= MIN_MERGE_NEIGHBORS
+                   && maxRelativeSpeedSquared < calmSpeedSquared && 2 * mass <= maxMass * (1 + 1e-9)) {
+            state[i] = MERGE;
+        } else {
+            state[i] = KEEP;
+        }
+    }
+
+    // Helper method per trovare il neighbor piú vicino della particella i entro h_i che si puó unire
+    // con lei (candidato anche lui e della stessa massa), -1 se non esiste
+    private int findPartner(ParticleStore store, NeighborList neighborList, int i) {
+        int[] neighbors = neighborList.indices();
+        double xi = store.positionX[i];
+        double yi = store.positionY[i];
+        double bestSquared = store.smoothRadii[i] * store.smoothRadii[i];
+        int best = -1;
+        int end = neighborList.end(i);
+        for (int k = neighborList.start(i); k < end; k++) {
+            int j = neighbors[k];
+            if (j == i || state[j] != MERGE || store.mass[j] != store.mass[i]) continue;
+            double rx = store.positionX[j] - xi;
+            double ry = store.positionY[j] - yi;
+            double distSquared = rx * rx + ry * ry;
+            if (distSquared < bestSquared) {
+                bestSquared = distSquared;
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    // Helper method per unire la particella j nella particella i, nel centro di massa della coppia
+    private void merge(ParticleStore store, int i, int j) {
+        double mass = store.mass[i] + store.mass[j];
+        double weightI = store.mass[i] / mass;
+        double weightJ = store.mass[j] / mass;
+        store.positionX[i] = weightI * store.positionX[i] + weightJ * store.positionX[j];
+        store.positionY[i] = weightI * store.positionY[i] + weightJ * store.positionY[j];
+        store.velocityX[i] = weightI * store.velocityX[i] + weightJ * store.velocityX[j];
+        store.velocityY[i] = weightI * store.velocityY[i] + weightJ * store.velocityY[j];
+        store.mass[i] = mass;
+        store.smoothRadii[i] = radiusOf(mass);
+        store.quietSteps[i] = 0;
+        store.updateCell(i);
+        state[i] = KEEP;
+        merges++;
+    }
+
+    // Helper method per dividere la particella i in due particelle di metá massa, affiancate lungo la
+    // superficie alla distanza delle particelle di quella massa. Ritorna false se il pool é pieno
+    private boolean split(ParticleStore store, ParticlePool pool, int i) {
+        double mass = 0.5 * store.mass[i];
+        double halfDistance = 0.5 * spacing * Math.sqrt(mass / baseMass);
+        double tangentX = -normalY[i];
+        double tangentY = normalX[i];
+        if (tangentX == 0 && tangentY == 0) {
+            tangentX = 1;
+        }
+        double x = store.positionX[i];
+        double y = store.positionY[i];
+        int child = pool.spawn(store, mass, x + tangentX * halfDistance, y + tangentY * halfDistance, store.velocityX[i], store.velocityY[i]);
+        if (child < 0) return false;
+        store.smoothRadii[child] = radiusOf(mass);
+        store.density[child] = store.density[i];
+        store.pressure[child] = store.pressure[i];
+        store.mass[i] = mass;
+        store.smoothRadii[i] = radiusOf(mass);
+        store.positionX[i] = x - tangentX * halfDistance;
+        store.positionY[i] = y - tangentY * halfDistance;
+        store.quietSteps[i] = 0;
+        store.updateCell(i);
+        splits++;
+        return true;
+    }
+}
@@ -1,14 +1,24 @@
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class Animation {
     private final int initialWindowWidth;
     private final int initialWindowHeight;
     private final int targetFPS;
-    private Fluid simulation;
+    private Simulation simulation;
     private Vector2D boundary;
     private JFrame f;
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private SimulationThread simulationThread;
+    private RasterRenderer rasterRenderer = new RasterRenderer(1);
+    private final DensityOverlay densityOverlay = new DensityOverlay();
+    private int densityResolution = 0;
+    private CheckpointWriter checkpointWriter = null;
+    private TrajectoryRecorder recorder = null;
+    private MetricsExporter metricsExporter = null;
     
     // Costruttore
     public Animation(int targetFPS, int windowWidth, int windowHeight) {
@@ -21,8 +31,44 @@ public class Animation {
         f.setSize(windowWidth, windowHeight);
     }
  
+    // Metodo per scegliere il rendering: "raster" scrive direttamente nei pixel di un'immagine
+    // (diviso in bands bande parallele), "vector" usa fillOval per ogni particella
+    public void setRenderer(String renderer, int bands) {
+        switch (renderer) {
+            case "raster":
+                this.rasterRenderer = new RasterRenderer(bands);
+                break;
+            case "vector":
+                this.rasterRenderer = null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown renderer: " + renderer);
+        }
+    }
+
+    // Metodo per attivare la visualizzazione del campo di densitá sotto le particelle,
+    // con un campione ogni resolution pixel (0 = disattivata)
+    public void setDensityOverlay(int resolution) {
+        this.densityResolution = resolution;
+    }
+
+    // Metodo per attivare i checkpoint periodici durante l'animazione
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter) {
+        this.checkpointWriter = checkpointWriter;
+    }
+
+    // Metodo per registrare la traiettoria durante l'animazione
+    public void setTrajectoryRecorder(TrajectoryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Metodo per esportare periodicamente le metriche durante l'animazione
+    public void setMetricsExporter(MetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
     // Metodo di retrieval delle particelle
-    public void setEnvironment(Fluid simulation) {
+    public void setEnvironment(Simulation simulation) {
         this.simulation = simulation;
         this.boundary = simulation.returnBoundary();
     }
@@ -42,12 +88,14 @@ public class Animation {
         g.drawRect(0, 0, boundaryX, boundaryY);
     }
     
-    // Metodo per disegnare le particelle, assegna un colore diverso in base alla velocitá:
+    // Metodo per disegnare le particelle della snapshot, assegna un colore diverso in base alla velocitá:
     // rosso = veloce, blu = lento
-    private void showSimulation(Graphics2D g) {
-        ArrayList<Particle> particles = simulation.getParticles();
-        for (Particle p : particles) {
-            double speed = p.velocity.x * p.velocity.x + p.velocity.y * p.velocity.y;
+    private void showSimulation(Graphics2D g, FrameSnapshot snapshot) {
+        float[] positions = snapshot.positions;
+        float[] velocities = snapshot.velocities;
+        int radius = snapshot.radius;
+        for (int i = 0; i < snapshot.count; i++) {
+            double speed = velocities[2 * i] * velocities[2 * i] + velocities[2 * i + 1] * velocities[2 * i + 1];
             double maxSpeed = 4;
 
             double t = speed / maxSpeed;
@@ -57,12 +105,31 @@ public class Animation {
             Color heatColor = Color.getHSBColor(hue, 1.0f, 1.0f);
 
             g.setColor(heatColor);
-            g.fillOval((int)p.position.x - (int)p.radius, (int)p.position.y - (int)p.radius, (int)(2 * p.radius), (int)(2 * p.radius));
+            g.fillOval((int) positions[2 * i] - radius, (int) positions[2 * i + 1] - radius, 2 * radius, 2 * radius);
         }
     }
 
-    // Metodo di rendering della simulazione
-    public void start(double dt, int substeps, boolean verbose) {
+    // Metodo per disegnare la snapshot con il renderer selezionato
+    private void render(Graphics2D g, FrameSnapshot snapshot, int width, int height) {
+        densityOverlay.render(g, snapshot);
+        if (rasterRenderer != null) {
+            g.drawImage(rasterRenderer.render(snapshot, width, height), 0, 0, null);
+        } else {
+            showSimulation(g, snapshot);
+        }
+    }
+
+    // Metodo di rendering della simulazione. La simulazione gira su un thread dedicato che pubblica
+    // una snapshot per frame, mentre il Timer di Swing si limita a ridisegnare l'ultima disponibile.
+    // Il tasto M attiva e disattiva la raccolta delle metriche
+    public void start(double dt, int substeps) {
+        simulationThread = new SimulationThread(simulation, snapshots, dt, substeps, targetFPS);
+        simulationThread.setWindowSize(initialWindowWidth, initialWindowHeight);
+        simulationThread.setDensityResolution(densityResolution);
+        simulationThread.setCheckpointWriter(checkpointWriter);
+        simulationThread.setTrajectoryRecorder(recorder);
+        simulationThread.setMetricsExporter(metricsExporter);
+
         JPanel panel = new JPanel() {
             double lastTime = System.nanoTime();
             double now = System.nanoTime();
@@ -76,25 +143,30 @@ public class Animation {
                 new Timer(1000 / targetFPS, e -> {
                     if (getWidth() == 0 || getHeight() == 0) return;
 
-                    simulation.newStep(dt, substeps, getWidth(), getHeight(), verbose);
-                    
+                    simulationThread.setWindowSize(getWidth(), getHeight());
                     repaint();
                 }).start();
+
+                getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('m'), "toggleMetrics");
+                getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke('M'), "toggleMetrics");
+                getActionMap().put("toggleMetrics", new AbstractAction() {
+                    @Override public void actionPerformed(ActionEvent e) {
+                        Metrics.setEnabled(!Metrics.isEnabled());
+                        System.out.println("Metrics " + (Metrics.isEnabled() ? "enabled" : "disabled"));
+                    }
+                });
             }
             
             @Override protected void paintComponent(Graphics gr) {
                 super.paintComponent(gr);
                 Graphics2D g = (Graphics2D) gr;
 
-                // fluid.showDensity(g, getWidth(), getHeight());
-                
                 // Rendering loop
-                if (verbose) {
-                    double showTime = System.nanoTime();
-                    showSimulation(g);
-                    System.out.println("Render Time (ms):               " + (System.nanoTime() - showTime) / 1_000_000.0);
-                } else {
-                    showSimulation(g);
+                FrameSnapshot snapshot = snapshots.acquire();
+                long renderStartTime = System.nanoTime();
+                render(g, snapshot, getWidth(), getHeight());
+                if (Metrics.isEnabled()) {
+                    Metrics.RENDER.record(System.nanoTime() - renderStartTime);
                 }
 
                 drawBoundary(g, getWidth(), getHeight());
@@ -113,9 +185,38 @@ public class Animation {
             }
         };
 
+        // Alla chiusura della finestra registrazione ed export delle metriche vengono completati
+        // prima dell'uscita, e come in modalitá batch viene scritto un checkpoint finale. Il checkpoint
+        // viene copiato solo se il thread di simulazione é terminato, altrimenti si attende solo la
+        // scrittura in corso
+        if (checkpointWriter != null || recorder != null || metricsExporter != null) {
+            f.addWindowListener(new WindowAdapter() {
+                @Override public void windowClosing(WindowEvent e) {
+                    simulationThread.shutdown();
+                    try {
+                        simulationThread.join(1000);
+                    } catch (InterruptedException ignored) {
+                    }
+                    if (checkpointWriter != null) {
+                        if (!simulationThread.isAlive()) {
+                            checkpointWriter.writeNow();
+                        }
+                        checkpointWriter.close();
+                    }
+                    if (recorder != null) {
+                        recorder.close();
+                    }
+                    if (metricsExporter != null) {
+                        metricsExporter.close();
+                    }
+                }
+            });
+        }
+
         panel.setPreferredSize(new Dimension(initialWindowWidth, initialWindowHeight));
         f.add(panel);
         f.pack();
         f.setVisible(true);
+        simulationThread.start();
     }
 }
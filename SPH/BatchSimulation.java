@@ -0,0 +1,92 @@
+// Esecuzione della simulazione senza interfaccia grafica: vengono eseguiti un numero fissato di frame
+// il piú velocemente possibile e alla fine vengono stampati tempo totale, throughput e tempi per fase.
+// Pensata per i nodi di calcolo headless e per misurare le prestazioni del solo motore
+public class BatchSimulation {
+    private final Simulation simulation;
+    private final int windowWidth;
+    private final int windowHeight;
+    private CheckpointWriter checkpointWriter = null;
+    private TrajectoryRecorder recorder = null;
+    private MetricsExporter metricsExporter = null;
+
+    // Costruttore
+    public BatchSimulation(Simulation simulation, int windowWidth, int windowHeight) {
+        this.simulation = simulation;
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+    }
+
+    // Metodo per attivare i checkpoint periodici, al termine dell'esecuzione viene sempre
+    // scritto un checkpoint finale
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter) {
+        this.checkpointWriter = checkpointWriter;
+    }
+
+    // Metodo per registrare la traiettoria di ogni frame, il file viene chiuso al termine dell'esecuzione
+    public void setTrajectoryRecorder(TrajectoryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Metodo per esportare periodicamente le metriche durante l'esecuzione
+    public void setMetricsExporter(MetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    // Metodo per eseguire frames step di simulazione da substeps substep ciascuno
+    public void run(double dt, int substeps, int frames) {
+        simulation.resetPhaseTotals();
+        long startSubsteps = simulation.getSubstepCount();
+        // il numero di particelle puó cambiare da un frame all'altro (emitter, sink, risoluzione
+        // adattiva), quindi i particle-step vengono sommati frame per frame
+        double particleSteps = 0;
+        long startTime = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            long stepStartTime = System.nanoTime();
+            long frameStartSubsteps = simulation.getSubstepCount();
+            simulation.newStep(dt, substeps, windowWidth, windowHeight);
+            particleSteps += (double) simulation.getParticleCount() * (simulation.getSubstepCount() - frameStartSubsteps);
+            Metrics.recordFrame(frame, System.nanoTime() - stepStartTime, simulation.getParticleCount());
+            if (checkpointWriter != null) {
+                checkpointWriter.onFrame(frame + 1);
+            }
+            if (recorder != null) {
+                recorder.onFrame(simulation, frame);
+            }
+            if (metricsExporter != null) {
+                metricsExporter.onFrame(frame + 1);
+            }
+        }
+        long wallTime = System.nanoTime() - startTime;
+        if (checkpointWriter != null) {
+            checkpointWriter.writeNow();
+            checkpointWriter.close();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+        printReport(simulation.getSubstepCount() - startSubsteps, particleSteps, frames, wallTime);
+    }
+
+    // Metodo per stampare il riepilogo dell'esecuzione
+    private void printReport(long totalSubsteps, double particleSteps, int frames, long wallTime) {
+        double wallSeconds = wallTime / 1_000_000_000.0;
+
+        System.out.println("Particles:                      " + simulation.getParticleCount());
+        System.out.println("Frames:                         " + frames + " (" + totalSubsteps + " substeps)");
+        System.out.println("Wall Time (s):                  " + wallSeconds);
+        System.out.println("Substeps/s:                     " + totalSubsteps / wallSeconds);
+        System.out.println("Particle-Steps/s:               " + particleSteps / wallSeconds);
+        System.out.println("Phase Totals:");
+        for (Phase phase : Phase.values()) {
+            if (simulation.isPhaseFused(phase)) {
+                System.out.printf("    %-28s%15s%n", phase.label, "(fused)");
+                continue;
+            }
+            double phaseMillis = simulation.getPhaseTotal(phase) / 1_000_000.0;
+            System.out.printf("    %-28s%12.1f ms  %5.1f%%%n", phase.label, phaseMillis, 100.0 * phaseMillis / (wallTime / 1_000_000.0));
+        }
+    }
+}
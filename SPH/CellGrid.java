@@ -0,0 +1,164 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+// Griglia delle celle per la ricerca dei neighbor costruita con un counting sort:
+// gli indici delle particelle di ciascuna cella sono contigui in un unico int[],
+// e per ogni cella si salvano solo l'inizio e il numero di particelle.
+// La griglia é densa: occupa memoria per tutte le celle del box anche se vuote
+class CellGrid implements SpatialGrid {
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    public final double cellSize;
+    public final int gridWidth;
+    public final int gridHeight;
+    private final int[] cellStart;
+    private final int[] cellCount;
+    private int[] particleCell = new int[0];
+    private int[] particleRank = new int[0];
+    private int[] sortedIndices = new int[0];
+
+    // Costruttore, cellSize é il lato delle celle e deve essere almeno pari al raggio di ricerca
+    public CellGrid(double cellSize, int gridWidth, int gridHeight) {
+        this.cellSize = cellSize;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.cellStart = new int[gridWidth * gridHeight];
+        this.cellCount = new int[gridWidth * gridHeight];
+    }
+
+    @Override
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    // Helper method per ottenere l'indice della cella a partire dalle coordinate della cella stessa,
+    // ritorna -1 se la cella é fuori dalla griglia
+    @Override
+    public int getCellIndex(int cellX, int cellY) {
+        if (cellX < 0 || cellY < 0 || cellX >= gridWidth || cellY >= gridHeight) return -1;
+        return cellX + cellY * gridWidth;
+    }
+
+    // Helper methods per ottenere le coordinate della cella che contiene il punto (x, y),
+    // i punti fuori dalla griglia vengono assegnati alla cella di bordo piú vicina
+    @Override
+    public int cellX(double x) {
+        return Math.max(0, Math.min((int) Math.floor(x / cellSize), gridWidth - 1));
+    }
+
+    @Override
+    public int cellY(double y) {
+        return Math.max(0, Math.min((int) Math.floor(y / cellSize), gridHeight - 1));
+    }
+
+    // Metodo per ricostruire la griglia a partire dalle posizioni delle particelle, in tre passaggi:
+    // 1. istogramma parallelo: ogni particella incrementa atomicamente il contatore della sua cella
+    //    e ne ricava la propria posizione (rank) all'interno della cella
+    // 2. prefix sum parallela dei contatori per ottenere l'inizio di ciascuna cella
+    // 3. scatter parallelo degli indici nella posizione finale
+    // Infine gli indici di ogni cella vengono ordinati, cosí l'ordine non dipende dallo scheduling dei thread
+    @Override
+    public void build(ParticleStore store, TileScheduler scheduler) {
+        build(store.count, i -> cellX(store.positionX[i]) + cellY(store.positionY[i]) * gridWidth, scheduler);
+    }
+
+    // Metodo analogo per le particelle in singola precisione
+    @Override
+    public void build(FloatParticleStore store, TileScheduler scheduler) {
+        build(store.count, i -> cellX(store.positionX[i]) + cellY(store.positionY[i]) * gridWidth, scheduler);
+    }
+
+    // Metodo di supporto comune ai due build, cellOf restituisce l'indice della cella della particella i
+    private void build(int count, IntUnaryOperator cellOf, TileScheduler scheduler) {
+        if (particleCell.length < count) {
+            particleCell = new int[count + count / 8];
+            particleRank = new int[count + count / 8];
+            sortedIndices = new int[count + count / 8];
+        }
+        final int[] particleCell = this.particleCell;
+        final int[] particleRank = this.particleRank;
+        final int[] sortedIndices = this.sortedIndices;
+
+        Arrays.fill(cellCount, 0);
+        scheduler.forRange(0, count, i -> {
+            int cell = cellOf.applyAsInt(i);
+            particleCell[i] = cell;
+            particleRank[i] = (int) INT_ARRAY.getAndAdd(cellCount, cell, 1);
+        });
+
+        System.arraycopy(cellCount, 0, cellStart, 0, cellCount.length);
+        scheduler.invoke(() -> Arrays.parallelPrefix(cellStart, Integer::sum));
+
+        scheduler.forRange(0, count, i -> {
+            int cell = particleCell[i];
+            sortedIndices[cellStart[cell] - cellCount[cell] + particleRank[i]] = i;
+        });
+
+        scheduler.forRange(0, cellCount.length, cell -> {
+            int size = cellCount[cell];
+            cellStart[cell] -= size;
+            if (size > 1) {
+                Arrays.sort(sortedIndices, cellStart[cell], cellStart[cell] + size);
+            }
+        });
+    }
+
+    // Indice nel vettore sortedIndices della prima particella della cella
+    @Override
+    public int cellStart(int cell) {
+        return cellStart[cell];
+    }
+
+    // Numero di particelle nella cella
+    @Override
+    public int cellCount(int cell) {
+        return cellCount[cell];
+    }
+
+    // Vettore degli indici delle particelle ordinati per cella
+    @Override
+    public int[] sortedIndices() {
+        return sortedIndices;
+    }
+
+    // Le tile sono numerate per righe a partire dall'angolo (0, 0) della griglia
+    @Override
+    public int tileCount(int tileSize) {
+        return tilesX(tileSize) * ((gridHeight + tileSize - 1) / tileSize);
+    }
+
+    @Override
+    public int tileX(int tile, int tileSize) {
+        return tile % tilesX(tileSize);
+    }
+
+    @Override
+    public int tileY(int tile, int tileSize) {
+        return tile / tilesX(tileSize);
+    }
+
+    private int tilesX(int tileSize) {
+        return (gridWidth + tileSize - 1) / tileSize;
+    }
+
+    // Le celle di una riga sono contigue in sortedIndices, quindi ogni riga di una tile
+    // corrisponde a un unico intervallo di indici
+    @Override
+    public void forEachInTile(int tile, int tileSize, IntConsumer body) {
+        int startX = tileX(tile, tileSize) * tileSize;
+        int startY = tileY(tile, tileSize) * tileSize;
+        int endX = Math.min(startX + tileSize, gridWidth) - 1;
+        int endY = Math.min(startY + tileSize, gridHeight);
+        for (int cellY = startY; cellY < endY; cellY++) {
+            int firstCell = getCellIndex(startX, cellY);
+            int lastCell = getCellIndex(endX, cellY);
+            int end = cellStart[lastCell] + cellCount[lastCell];
+            for (int k = cellStart[firstCell]; k < end; k++) {
+                body.accept(sortedIndices[k]);
+            }
+        }
+    }
+}
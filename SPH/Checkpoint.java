@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Checkpoint binario dello stato della simulazione: parametri del fluido, dimensioni della griglia
+// e stato di ogni particella. Il file viene scritto e letto tramite buffer memory-mapped di un
+// FileChannel, un array alla volta, quindi anche milioni di particelle vengono copiate con
+// poche operazioni di massa. Formato (little endian, versione 3):
+//   int magic "SPHC", int version, int count, int radius, int gridWidth, int gridHeight,
+//   double smoothRadius, dampingFactor, density, pressureConstant, viscosityConstant,
+//   gravityX, gravityY, skin, long substepCount,
+//   poi count double per ciascuno di: mass, positionX, positionY, velocityX, velocityY, density, pressure,
+//   poi count int per ciascuno di: id, quietSteps,
+//   e count double per smoothRadii.
+// I file della versione 1 non hanno gli array int: gli id vengono ricreati nell'ordine del file
+// e tutte le particelle ripartono sveglie. Quelli delle versioni 1 e 2 non hanno smoothRadii:
+// tutte le particelle riprendono con smoothRadius
+class Checkpoint {
+    public static final int MAGIC = 0x53504843;
+    public static final int VERSION = 3;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + 8 * Double.BYTES + Long.BYTES;
+    private static final int DOUBLE_ARRAYS = 7;
+    private static final int INT_ARRAYS = 2;
+    private static final int RADIUS_ARRAYS = 1;
+
+    public final int count;
+    public final int radius;
+    public final int gridWidth;
+    public final int gridHeight;
+    public final double smoothRadius;
+    public final double dampingFactor;
+    public final double density;
+    public final double pressureConstant;
+    public final double viscosityConstant;
+    public final double gravityX;
+    public final double gravityY;
+    public final double skin;
+    public final long substepCount;
+    public final double[] mass;
+    public final double[] positionX;
+    public final double[] positionY;
+    public final double[] velocityX;
+    public final double[] velocityY;
+    public final double[] particleDensity;
+    public final double[] pressure;
+    public final int[] id;
+    public final int[] quietSteps;
+    public final double[] smoothRadii;
+
+    // Costruttore, gli array di stato vengono allocati vuoti e riempiti da chi crea il checkpoint
+    public Checkpoint(int count, int radius, int gridWidth, int gridHeight, double smoothRadius, double dampingFactor, double density, double pressureConstant, double viscosityConstant, double gravityX, double gravityY, double skin, long substepCount) {
+        this.count = count;
+        this.radius = radius;
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.smoothRadius = smoothRadius;
+        this.dampingFactor = dampingFactor;
+        this.density = density;
+        this.pressureConstant = pressureConstant;
+        this.viscosityConstant = viscosityConstant;
+        this.gravityX = gravityX;
+        this.gravityY = gravityY;
+        this.skin = skin;
+        this.substepCount = substepCount;
+        this.mass = new double[count];
+        this.positionX = new double[count];
+        this.positionY = new double[count];
+        this.velocityX = new double[count];
+        this.velocityY = new double[count];
+        this.particleDensity = new double[count];
+        this.pressure = new double[count];
+        this.id = new int[count];
+        this.quietSteps = new int[count];
+        this.smoothRadii = new double[count];
+        for (int i = 0; i < count; i++) {
+            id[i] = i;
+        }
+        Arrays.fill(smoothRadii, smoothRadius);
+    }
+
+    // Metodo per creare la lista di particelle da cui ricostruire il fluido
+    public ArrayList<Particle> createParticles() {
+        ArrayList<Particle> particles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Particle p = new Particle(radius, new Vector2D(positionX[i], positionY[i]), new Vector2D(velocityX[i], velocityY[i]), smoothRadius, mass[i], dampingFactor);
+            p.density = particleDensity[i];
+            p.pressure = pressure[i];
+            particles.add(p);
+        }
+        return particles;
+    }
+
+    // Metodo per ottenere gli id delle particelle da riassegnare al fluido ripreso. Con emettitori e
+    // pozzi gli id salvati possono non essere contigui: in quel caso vengono rinumerati da 0 a count - 1
+    // mantenendone l'ordine, cosí restano validi come posizioni nelle snapshot
+    public int[] contiguousIds() {
+        boolean contiguous = true;
+        for (int i = 0; i < count && contiguous; i++) {
+            contiguous = id[i] >= 0 && id[i] < count;
+        }
+        if (contiguous) return id;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) id[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] ids = new int[count];
+        for (int k = 0; k < count; k++) {
+            ids[(int) keys[k]] = k;
+        }
+        return ids;
+    }
+
+    // Metodo per sapere se qualche particella ha uno smoothing radius diverso da smoothRadius,
+    // cioé se il fluido ripreso deve usare i raggi per particella
+    public boolean hasVariableRadius() {
+        for (int i = 0; i < count; i++) {
+            if (smoothRadii[i] != smoothRadius) return true;
+        }
+        return false;
+    }
+
+    // Vettori di stato nell'ordine in cui compaiono nel file
+    private double[][] stateArrays() {
+        return new double[][] { mass, positionX, positionY, velocityX, velocityY, particleDensity, pressure };
+    }
+
+    private int[][] intArrays() {
+        return new int[][] { id, quietSteps };
+    }
+
+    // Metodo per scrivere il checkpoint in path. Il file viene prima scritto accanto alla destinazione
+    // e poi rinominato, cosí un crash durante la scrittura non lascia un checkpoint troncato
+    public void write(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long arrayBytes = (long) count * Double.BYTES;
+        long intArrayBytes = (long) count * Integer.BYTES;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(radius).putInt(gridWidth).putInt(gridHeight);
+            header.putDouble(smoothRadius).putDouble(dampingFactor).putDouble(density).putDouble(pressureConstant);
+            header.putDouble(viscosityConstant).putDouble(gravityX).putDouble(gravityY).putDouble(skin);
+            header.putLong(substepCount);
+            header.force();
+
+            long position = HEADER_SIZE;
+            for (double[] values : stateArrays()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, arrayBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(values, 0, count);
+                buffer.force();
+                position += arrayBytes;
+            }
+            for (int[] values : intArrays()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, intArrayBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(values, 0, count);
+                buffer.force();
+                position += intArrayBytes;
+            }
+            MappedByteBuffer radii = channel.map(FileChannel.MapMode.READ_WRITE, position, arrayBytes);
+            radii.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(smoothRadii, 0, count);
+            radii.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Metodo per leggere un checkpoint scritto da write
+    public static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Checkpoint too short: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+            }
+            Checkpoint checkpoint = new Checkpoint(header.getInt(), header.getInt(), header.getInt(), header.getInt(),
+                header.getDouble(), header.getDouble(), header.getDouble(), header.getDouble(),
+                header.getDouble(), header.getDouble(), header.getDouble(), header.getDouble(), header.getLong());
+
+            long arrayBytes = (long) checkpoint.count * Double.BYTES;
+            long intArrayBytes = (long) checkpoint.count * Integer.BYTES;
+            int intArrays = version >= 2 ? INT_ARRAYS : 0;
+            int radiusArrays = version >= 3 ? RADIUS_ARRAYS : 0;
+            if (channel.size() != HEADER_SIZE + (DOUBLE_ARRAYS + radiusArrays) * arrayBytes + intArrays * intArrayBytes) {
+                throw new IOException("Checkpoint size does not match its particle count: " + path);
+            }
+            long position = HEADER_SIZE;
+            for (double[] values : checkpoint.stateArrays()) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, arrayBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, 0, checkpoint.count);
+                position += arrayBytes;
+            }
+            if (version >= 2) {
+                for (int[] values : checkpoint.intArrays()) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, intArrayBytes);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, 0, checkpoint.count);
+                    position += intArrayBytes;
+                }
+            }
+            if (version >= 3) {
+                MappedByteBuffer radii = channel.map(FileChannel.MapMode.READ_ONLY, position, arrayBytes);
+                radii.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(checkpoint.smoothRadii, 0, checkpoint.count);
+            }
+            return checkpoint;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Scrittura periodica dei checkpoint senza bloccare il loop di simulazione: ogni interval frame lo
+// stato viene copiato in un Checkpoint (una copia di array, sul thread di simulazione) e il file viene
+// scritto da un thread dedicato. Se la scrittura precedente non é ancora finita il checkpoint del
+// frame corrente viene saltato, cosí la simulazione non aspetta mai il disco
+class CheckpointWriter {
+    private final Checkpointable source;
+    private final Path path;
+    private final int interval;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "sph-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending = null;
+
+    // Costruttore, source é il motore di cui salvare lo stato e interval il numero di frame tra due checkpoint
+    public CheckpointWriter(Checkpointable source, Path path, int interval) {
+        this.source = source;
+        this.path = path;
+        this.interval = Math.max(1, interval);
+    }
+
+    // Metodo da chiamare alla fine di ogni frame dal thread di simulazione
+    public void onFrame(long frame) {
+        if (frame % interval != 0) return;
+        if (pending != null && !pending.isDone()) return;
+        Checkpoint checkpoint = source.createCheckpoint();
+        pending = executor.submit(() -> write(checkpoint));
+    }
+
+    // Metodo per scrivere subito un checkpoint, attendendo anche la scrittura in corso
+    public void writeNow() {
+        Checkpoint checkpoint = source.createCheckpoint();
+        awaitPending();
+        pending = executor.submit(() -> write(checkpoint));
+        awaitPending();
+    }
+
+    // Metodo per attendere l'ultima scrittura e fermare il thread
+    public void close() {
+        awaitPending();
+        executor.shutdown();
+    }
+
+    private void write(Checkpoint checkpoint) {
+        long startTime = System.nanoTime();
+        try {
+            checkpoint.write(path);
+        } catch (IOException e) {
+            System.err.println("Checkpoint write failed: " + e.getMessage());
+            return;
+        }
+        System.out.println("Checkpoint written to " + path + " in " + (System.nanoTime() - startTime) / 1_000_000.0 + " ms");
+    }
+
+    private void awaitPending() {
+        if (pending == null) return;
+        try {
+            pending.get(1, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            System.err.println("Checkpoint write did not complete: " + e);
+        }
+    }
+}
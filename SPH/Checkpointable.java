@@ -0,0 +1,10 @@
+// Motori di simulazione il cui stato puó essere salvato in un checkpoint e ripreso (Fluid e
+// FloatFluid). É separata da Simulation perché non tutte le simulazioni hanno uno stato da
+// salvare: la riproduzione di una traiettoria (TrajectoryPlayer) legge solo frame giá calcolati
+interface Checkpointable {
+    // Metodo per copiare lo stato corrente in un checkpoint, da chiamare tra un frame e l'altro
+    Checkpoint createCheckpoint();
+
+    // Metodo per riprendere da un checkpoint lo stato che non passa dagli oggetti Particle
+    void restoreState(Checkpoint checkpoint);
+}
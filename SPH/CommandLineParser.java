@@ -8,6 +8,46 @@ public class CommandLineParser {
     private int particleAmount;
     private int maxWindowWidth;
     private int maxWindowHeight;
+    private double skin;
+    private int reorderInterval;
+    private String kernel;
+    private int kernelTableSize;
+    private boolean headless;
+    private int frames;
+    private String renderer;
+    private int renderBands;
+    private int densityOverlay;
+    private int threads;
+    private int tileSize;
+    private boolean symmetricPairs;
+    private boolean fusedPasses;
+    private String precision;
+    private boolean vectorKernels;
+    private String checkpoint;
+    private int checkpointInterval;
+    private String restore;
+    private String record;
+    private String recordFormat;
+    private String replay;
+    private boolean adaptiveTimestep;
+    private double courant;
+    private boolean sleep;
+    private double sleepSpeed;
+    private double sleepAcceleration;
+    private int sleepSteps;
+    private boolean sparseGrid;
+    private boolean metrics;
+    private String metricsFile;
+    private int metricsInterval;
+    private String emitters;
+    private String sinks;
+    private int poolSize;
+    private boolean adaptiveResolution;
+    private int maxMerge;
+    private double calmSpeed;
+    private int processes;
+    private int rank;
+    private int port;
 
     public CommandLineParser(String[] args) {
         // Default values
@@ -20,6 +60,46 @@ public class CommandLineParser {
         this.particleAmount = 4900;
         this.maxWindowWidth = 1200;
         this.maxWindowHeight = 600;
+        this.skin = 1.0;
+        this.reorderInterval = 100;
+        this.kernel = "spiky";
+        this.kernelTableSize = 0;
+        this.headless = false;
+        this.frames = 100;
+        this.renderer = "raster";
+        this.renderBands = 1;
+        this.densityOverlay = 0;
+        this.threads = 0;
+        this.tileSize = 8;
+        this.symmetricPairs = false;
+        this.fusedPasses = false;
+        this.precision = "double";
+        this.vectorKernels = false;
+        this.checkpoint = null;
+        this.checkpointInterval = 100;
+        this.restore = null;
+        this.record = null;
+        this.recordFormat = "delta";
+        this.replay = null;
+        this.adaptiveTimestep = false;
+        this.courant = 0.2;
+        this.sleep = false;
+        this.sleepSpeed = 0.1;
+        this.sleepAcceleration = 0.05;
+        this.sleepSteps = 50;
+        this.sparseGrid = false;
+        this.metrics = false;
+        this.metricsFile = null;
+        this.metricsInterval = 30;
+        this.emitters = null;
+        this.sinks = null;
+        this.poolSize = 20000;
+        this.adaptiveResolution = false;
+        this.maxMerge = 4;
+        this.calmSpeed = 0.3;
+        this.processes = 0;
+        this.rank = -1;
+        this.port = 47000;
         
         // Parse arguments
         for (int i = 0; i < args.length; i += 2) {
@@ -52,6 +132,126 @@ public class CommandLineParser {
                 case "--maxwindowheight":
                     this.maxWindowHeight = Integer.parseInt(args[i + 1]);
                     break;
+                case "--skin":
+                    this.skin = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--threads":
+                    this.threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--tilesize":
+                    this.tileSize = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--symmetricpairs":
+                    this.symmetricPairs = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--fusedpasses":
+                    this.fusedPasses = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--precision":
+                    this.precision = args[i + 1];
+                    break;
+                case "--vectorkernels":
+                    this.vectorKernels = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--checkpoint":
+                    this.checkpoint = args[i + 1];
+                    break;
+                case "--checkpointinterval":
+                    this.checkpointInterval = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--restore":
+                    this.restore = args[i + 1];
+                    break;
+                case "--record":
+                    this.record = args[i + 1];
+                    break;
+                case "--recordformat":
+                    this.recordFormat = args[i + 1];
+                    break;
+                case "--replay":
+                    this.replay = args[i + 1];
+                    break;
+                case "--adaptivedt":
+                    this.adaptiveTimestep = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--courant":
+                    this.courant = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--sleep":
+                    this.sleep = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--sleepspeed":
+                    this.sleepSpeed = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--sleepacceleration":
+                    this.sleepAcceleration = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--sleepsteps":
+                    this.sleepSteps = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--sparsegrid":
+                    this.sparseGrid = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--metrics":
+                    this.metrics = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--metricsfile":
+                    this.metricsFile = args[i + 1];
+                    break;
+                case "--metricsinterval":
+                    this.metricsInterval = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--emitters":
+                    this.emitters = args[i + 1];
+                    break;
+                case "--sinks":
+                    this.sinks = args[i + 1];
+                    break;
+                case "--poolsize":
+                    this.poolSize = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--adaptiveresolution":
+                    this.adaptiveResolution = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--maxmerge":
+                    this.maxMerge = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--calmspeed":
+                    this.calmSpeed = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--processes":
+                    this.processes = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rank":
+                    this.rank = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--port":
+                    this.port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--reorderinterval":
+                    this.reorderInterval = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--kernel":
+                    this.kernel = args[i + 1];
+                    break;
+                case "--kerneltable":
+                    this.kernelTableSize = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--headless":
+                    this.headless = Boolean.parseBoolean(args[i + 1]);
+                    break;
+                case "--frames":
+                    this.frames = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--renderer":
+                    this.renderer = args[i + 1];
+                    break;
+                case "--renderbands":
+                    this.renderBands = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--densityoverlay":
+                    this.densityOverlay = Integer.parseInt(args[i + 1]);
+                    break;
                 default:
                     System.out.println("Unknown parameter: " + args[i]);
             }
@@ -85,4 +285,124 @@ public class CommandLineParser {
     public int getMaxWindowHeight() {
         return maxWindowHeight;
     }
+    public double getSkin() {
+        return skin;
+    }
+    public int getReorderInterval() {
+        return reorderInterval;
+    }
+    public int getThreads() {
+        return threads;
+    }
+    public int getTileSize() {
+        return tileSize;
+    }
+    public boolean isSymmetricPairs() {
+        return symmetricPairs;
+    }
+    public boolean isFusedPasses() {
+        return fusedPasses;
+    }
+    public String getPrecision() {
+        return precision;
+    }
+    public boolean isVectorKernels() {
+        return vectorKernels;
+    }
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+    public String getRestore() {
+        return restore;
+    }
+    public String getRecord() {
+        return record;
+    }
+    public String getRecordFormat() {
+        return recordFormat;
+    }
+    public String getReplay() {
+        return replay;
+    }
+    public boolean isAdaptiveTimestep() {
+        return adaptiveTimestep;
+    }
+    public double getCourant() {
+        return courant;
+    }
+    public boolean isSleep() {
+        return sleep;
+    }
+    public double getSleepSpeed() {
+        return sleepSpeed;
+    }
+    public double getSleepAcceleration() {
+        return sleepAcceleration;
+    }
+    public int getSleepSteps() {
+        return sleepSteps;
+    }
+    public boolean isSparseGrid() {
+        return sparseGrid;
+    }
+    public boolean isMetrics() {
+        return metrics;
+    }
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+    public String getEmitters() {
+        return emitters;
+    }
+    public String getSinks() {
+        return sinks;
+    }
+    public int getPoolSize() {
+        return poolSize;
+    }
+    public boolean isAdaptiveResolution() {
+        return adaptiveResolution;
+    }
+    public int getMaxMerge() {
+        return maxMerge;
+    }
+    public double getCalmSpeed() {
+        return calmSpeed;
+    }
+    public int getProcesses() {
+        return processes;
+    }
+    public int getRank() {
+        return rank;
+    }
+    public int getPort() {
+        return port;
+    }
+    public String getKernel() {
+        return kernel;
+    }
+    public int getKernelTableSize() {
+        return kernelTableSize;
+    }
+    public boolean isHeadless() {
+        return headless;
+    }
+    public int getFrames() {
+        return frames;
+    }
+    public String getRenderer() {
+        return renderer;
+    }
+    public int getRenderBands() {
+        return renderBands;
+    }
+    public int getDensityOverlay() {
+        return densityOverlay;
+    }
 }
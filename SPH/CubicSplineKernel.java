@@ -0,0 +1,36 @@
+// Kernel cubic spline (Monaghan) in 2D, riscalato in modo che il supporto sia smoothRadius
+class CubicSplineKernel extends Kernel {
+    private final double valueScale;
+    private final double gradientScale;
+    private final double inverseRadius;
+
+    // Costruttore
+    public CubicSplineKernel(double smoothRadius) {
+        super(smoothRadius);
+        this.inverseRadius = 1.0 / smoothRadius;
+        this.valueScale = 40.0 / (7.0 * Math.PI * squaredSmoothRadius);
+        this.gradientScale = valueScale * inverseRadius;
+    }
+
+    @Override
+    public double value(double dist) {
+        if (dist < 0 || dist > smoothRadius) return 0;
+        double q = dist * inverseRadius;
+        if (q <= 0.5) {
+            return valueScale * (6.0 * (q * q * q - q * q) + 1.0);
+        }
+        double diff = 1.0 - q;
+        return valueScale * 2.0 * diff * diff * diff;
+    }
+
+    @Override
+    public double gradient(double dist) {
+        if (dist <= 0 || dist > smoothRadius) return 0;
+        double q = dist * inverseRadius;
+        if (q <= 0.5) {
+            return gradientScale * 6.0 * (3.0 * q * q - 2.0 * q);
+        }
+        double diff = 1.0 - q;
+        return -gradientScale * 6.0 * diff * diff;
+    }
+}
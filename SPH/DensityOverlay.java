@@ -0,0 +1,32 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// Visualizzazione del campo di densitá contenuto in una snapshot: i campioni vengono convertiti
+// in una scala di rossi (come il vecchio Fluid.showDensity) in un'immagine a bassa risoluzione,
+// riusata tra un frame e l'altro, che viene poi disegnata ingrandita con un'unica drawImage
+class DensityOverlay {
+    private BufferedImage image;
+    private int[] pixels;
+
+    // Metodo per disegnare il campo di densitá della snapshot, se presente
+    public void render(Graphics2D g, FrameSnapshot snapshot) {
+        int width = snapshot.densityWidth;
+        int height = snapshot.densityHeight;
+        if (width == 0 || height == 0) return;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        float[] density = snapshot.density;
+        float scale = snapshot.maxDensity > 0 ? 255 / snapshot.maxDensity : 0;
+        for (int k = 0; k < width * height; k++) {
+            int colorValue = (int) Math.min(255, density[k] * scale);
+            pixels[k] = colorValue << 16;
+        }
+
+        int resolution = snapshot.densityResolution;
+        g.drawImage(image, 0, 0, width * resolution, height * resolution, null);
+    }
+}
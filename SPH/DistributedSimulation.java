@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Esecuzione headless della simulazione su piú processi, uno per slab del dominio (vedi SlabDomain).
+// Il processo avviato dall'utente lancia i processi di calcolo sulla stessa macchina, con gli stessi
+// argomenti piú --rank, e ne attende la fine. Alla fine dell'esecuzione il processo 0 raccoglie e
+// stampa i tempi di tutti i processi
+public class DistributedSimulation {
+    private final Fluid fluid;
+    private final SlabDomain domain;
+    private final int windowWidth;
+    private final int windowHeight;
+
+    // Costruttore, windowWidth e windowHeight sono le dimensioni dell'intero dominio
+    public DistributedSimulation(Fluid fluid, SlabDomain domain, int windowWidth, int windowHeight) {
+        this.fluid = fluid;
+        this.domain = domain;
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+    }
+
+    // Metodo per avviare processes processi di calcolo e attenderne la fine, ritorna il numero di
+    // processi terminati con errore. Se un processo fallisce gli altri vengono terminati, dato che
+    // resterebbero in attesa dei messaggi del vicino
+    public static int launch(String[] args, int processes) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> children = new ArrayList<>();
+        for (int rank = 0; rank < processes; rank++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("SPH");
+            command.addAll(Arrays.asList(args));
+            command.add("--rank");
+            command.add(Integer.toString(rank));
+            children.add(new ProcessBuilder(command).inheritIO().start());
+        }
+
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Process child : children) {
+                if (child.isAlive()) {
+                    running = true;
+                } else if (child.exitValue() != 0) {
+                    children.forEach(Process::destroy);
+                }
+            }
+            if (running) Thread.sleep(100);
+        }
+        int failed = 0;
+        for (Process child : children) {
+            if (child.exitValue() != 0) failed++;
+        }
+        return failed;
+    }
+
+    // Metodo per eseguire frames step di simulazione da substeps substep ciascuno, da chiamare su tutti i processi
+    public void run(double dt, int substeps, int frames) throws IOException {
+        fluid.resetPhaseTotals();
+        long startSubsteps = fluid.getSubstepCount();
+        long startTime = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            long stepStartTime = System.nanoTime();
+            fluid.newStep(dt, substeps, windowWidth, windowHeight);
+            Metrics.recordFrame(frame, System.nanoTime() - stepStartTime, fluid.getParticleCount());
+        }
+        long wallTime = System.nanoTime() - startTime;
+
+        double[] values = {
+            domain.getOwnedCount(), domain.getGhostCount(), domain.getMigratedCount(), wallTime, fluid.getPhaseTotal(Phase.HALO)
+        };
+        double[][] rows = domain.gather(values);
+        if (rows != null) {
+            printReport(rows, fluid.getSubstepCount() - startSubsteps, frames);
+        }
+    }
+
+    // Metodo per stampare il riepilogo dell'esecuzione sul processo 0. Il tempo di scambio comprende
+    // l'attesa dei vicini, quindi misura anche lo sbilanciamento del carico tra i processi
+    private void printReport(double[][] rows, long totalSubsteps, int frames) {
+        long particles = 0;
+        double wallTime = 0;
+        double haloTime = 0;
+        for (double[] row : rows) {
+            particles += (long) row[0];
+            wallTime = Math.max(wallTime, row[3]);
+            haloTime = Math.max(haloTime, row[4]);
+        }
+        double wallSeconds = wallTime / 1_000_000_000.0;
+
+        System.out.println("Processes:                      " + rows.length);
+        System.out.println("Particles:                      " + particles);
+        System.out.println("Frames:                         " + frames + " (" + totalSubsteps + " substeps)");
+        System.out.println("Wall Time (s):                  " + wallSeconds);
+        System.out.println("Frame Time (ms):                " + wallTime / 1_000_000.0 / frames);
+        System.out.println("Halo Exchange (ms):             " + haloTime / 1_000_000.0 / frames);
+        System.out.println("Particle-Steps/s:               " + particles * totalSubsteps / wallSeconds);
+        System.out.printf("    %-6s%12s%10s%10s%12s%14s%n", "Rank", "Particles", "Ghosts", "Migrated", "Wall (s)", "Halo (ms)");
+        for (int rank = 0; rank < rows.length; rank++) {
+            double[] row = rows[rank];
+            System.out.printf("    %-6d%12d%10d%10d%12.2f%14.1f%n", rank, (long) row[0], (long) row[1], (long) row[2],
+                row[3] / 1_000_000_000.0, row[4] / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Emettitore di particelle, per esempio l'uscita di un tubo o di un rubinetto: le particelle escono
+// a strati dal segmento (x0, y0) - (x1, y1) con velocitá (vx, vy). Quando lo strato precedente si é
+// allontanato di spacing ne viene emesso uno nuovo, con particelle distanti spacing lungo il segmento,
+// cosí la portata dipende solo da velocitá, lunghezza del segmento e spacing
+class Emitter {
+    public final double x0;
+    public final double y0;
+    public final double x1;
+    public final double y1;
+    public final double vx;
+    public final double vy;
+    public final double spacing;
+    public final double mass;
+    private final int perLayer;
+    private double travelled = 0;
+
+    // Costruttore, la velocitá non puó essere nulla
+    public Emitter(double x0, double y0, double x1, double y1, double vx, double vy, double spacing, double mass) {
+        if (vx == 0 && vy == 0) {
+            throw new IllegalArgumentException("Emitter velocity cannot be zero");
+        }
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.vx = vx;
+        this.vy = vy;
+        this.spacing = spacing;
+        this.mass = mass;
+        this.perLayer = (int) Math.floor(Math.hypot(x1 - x0, y1 - y0) / spacing) + 1;
+    }
+
+    // Metodo per avanzare di dt ed emettere gli strati dovuti, ritorna il numero di particelle aggiunte.
+    // Ogni strato parte giá spostato della distanza percorsa dopo la sua emissione; se il pool é pieno
+    // lo strato viene perso
+    public int emit(ParticleStore store, ParticlePool pool, double dt) {
+        double speed = Math.hypot(vx, vy);
+        travelled += speed * dt;
+        int emitted = 0;
+        while (travelled >= spacing) {
+            travelled -= spacing;
+            double shiftX = vx / speed * travelled;
+            double shiftY = vy / speed * travelled;
+            for (int k = 0; k < perLayer; k++) {
+                double t = perLayer == 1 ? 0.5 : (double) k / (perLayer - 1);
+                if (pool.spawn(store, mass, x0 + t * (x1 - x0) + shiftX, y0 + t * (y1 - y0) + shiftY, vx, vy) >= 0) {
+                    emitted++;
+                }
+            }
+        }
+        return emitted;
+    }
+
+    // Metodo per leggere una lista di emettitori nel formato "x0,y0,x1,y1,vx,vy;..."
+    public static List<Emitter> parse(String spec, double spacing, double mass) {
+        List<Emitter> emitters = new ArrayList<>();
+        for (String entry : spec.split(";")) {
+            String[] values = entry.split(",");
+            if (values.length != 6) {
+                throw new IllegalArgumentException("Invalid emitter, expected x0,y0,x1,y1,vx,vy: " + entry);
+            }
+            double[] v = new double[6];
+            for (int k = 0; k < 6; k++) {
+                v[k] = Double.parseDouble(values[k].trim());
+            }
+            emitters.add(new Emitter(v[0], v[1], v[2], v[3], v[4], v[5], spacing, mass));
+        }
+        return emitters;
+    }
+}
@@ -0,0 +1,261 @@
+import java.util.ArrayList;
+
+// Motore SPH in singola precisione: stato delle particelle, kernel e accumulatori sono in float.
+// Segue la pipeline fusa di Fluid (densitá e pressione, forze e gravitá, integrazione e controllo
+// dello spostamento) e condivide con essa, attraverso AbstractFluid, griglia delle celle, lista dei
+// neighbor, scheduler, riordino e rendering. I kernel vengono tabulati in float a partire da quelli in double
+public class FloatFluid extends AbstractFluid {
+    static final int KERNEL_SAMPLES = 4096;
+    private final FloatParticleStore store;
+    private FloatKernel pressureKernel;
+    private FloatKernel viscosityKernel;
+
+    // Costruttore, stessi parametri di Fluid
+    public FloatFluid(ArrayList<Particle> particles, double density, double pressureConstant, double viscosityConstant, Vector2D gravity, int gridWidth, int gridHeight) {
+        super(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+        this.store = new FloatParticleStore(particles);
+        this.cellGrid = createCellGrid(neighborList.getSkin());
+        setKernels(new SpikyKernel(store.smoothRadius), new Poly6Kernel(store.smoothRadius));
+    }
+
+    // Metodo per sostituire i kernel di default, vengono tabulati in float. Un TabulatedKernel viene
+    // ricampionato dal kernel originale con lo stesso numero di intervalli, cosí le due tabelle
+    // differiscono solo per la precisione. Come in Fluid entrambi devono avere lo smoothRadius delle
+    // particelle (confrontato in float, la precisione dello store)
+    public void setKernels(Kernel pressureKernel, Kernel viscosityKernel) {
+        if ((float) pressureKernel.smoothRadius != store.smoothRadius || (float) viscosityKernel.smoothRadius != store.smoothRadius) {
+            throw new IllegalArgumentException("Kernel smoothRadius does not match the particles smoothRadius");
+        }
+        this.pressureKernel = tabulate(pressureKernel);
+        this.viscosityKernel = tabulate(viscosityKernel);
+    }
+
+    private static FloatKernel tabulate(Kernel kernel) {
+        if (kernel instanceof TabulatedKernel) {
+            TabulatedKernel table = (TabulatedKernel) kernel;
+            return new FloatKernel(table.getKernel(), table.getSamples());
+        }
+        return new FloatKernel(kernel, KERNEL_SAMPLES);
+    }
+
+    @Override
+    protected double smoothRadius() {
+        return store.smoothRadius;
+    }
+
+    @Override
+    protected double positionX(int i) {
+        return store.positionX[i];
+    }
+
+    @Override
+    protected double positionY(int i) {
+        return store.positionY[i];
+    }
+
+    @Override
+    protected double velocityX(int i) {
+        return store.velocityX[i];
+    }
+
+    @Override
+    protected double velocityY(int i) {
+        return store.velocityY[i];
+    }
+
+    // Lo store in float non salva la cella delle particelle, che viene ricavata dalla griglia
+    @Override
+    protected long reorderCell(int i) {
+        return cellMortonIndex(cellGrid.cellX(store.positionX[i]), cellGrid.cellY(store.positionY[i]));
+    }
+
+    @Override
+    protected void permuteStore(int[] order) {
+        store.permute(order, scheduler);
+    }
+
+    @Override
+    protected boolean isNeighborListValid() {
+        return neighborList.isValid(store);
+    }
+
+    @Override
+    protected void buildNeighborList() {
+        cellGrid.build(store, scheduler);
+        neighborList.build(store, cellGrid, scheduler);
+    }
+
+    // Metodo per il calcolo di densitá e pressione di ciascuna particella nello stesso loop
+    @Override
+    protected void fusedDensityPressure() {
+        final float[] positionX = store.positionX;
+        final float[] positionY = store.positionY;
+        final float[] mass = store.mass;
+        final FloatKernel kernel = pressureKernel;
+        final float squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final float restDensity = (float) density;
+        final float pressureConstant = (float) this.pressureConstant;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            float densitySum = 0;
+            float xi = positionX[i];
+            float yi = positionY[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                float rx = positionX[j] - xi;
+                float ry = positionY[j] - yi;
+                float distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                densitySum += mass[j] * kernel.valueSquared(distSquared);
+            }
+            store.density[i] = densitySum;
+            store.pressure[i] = Math.max(0, pressureConstant * (densitySum - restDensity));
+        });
+    }
+
+    // Metodo per il calcolo delle forze di pressione e viscositá, con la gravitá applicata
+    // nello stesso loop, stesse formule di Fluid.applyMergedForces
+    @Override
+    protected void fusedForces(Vector2D gravity) {
+        final float[] positionX = store.positionX;
+        final float[] positionY = store.positionY;
+        final float[] velocityX = store.velocityX;
+        final float[] velocityY = store.velocityY;
+        final float[] mass = store.mass;
+        final float[] density = store.density;
+        final float[] pressure = store.pressure;
+        final FloatKernel pressureKernel = this.pressureKernel;
+        final FloatKernel viscosityKernel = this.viscosityKernel;
+        final float squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final float viscosityConstant = (float) this.viscosityConstant;
+        final float gravityX = (float) gravity.x;
+        final float gravityY = (float) gravity.y;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            float pressureForceX = 0;
+            float pressureForceY = 0;
+            float viscosityForceX = 0;
+            float viscosityForceY = 0;
+            float xi = positionX[i];
+            float yi = positionY[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                if (i == j) continue;
+                float rx = positionX[j] - xi;
+                float ry = positionY[j] - yi;
+                float distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                float dist = (float) Math.sqrt(distSquared);
+
+                float pressureMiddle = (pressure[i] + pressure[j]) / 2.0f;
+                float gradient = pressureKernel.gradientSquared(distSquared);
+                float laplacian = viscosityKernel.gradientSquared(distSquared);
+                float viscosityScale = -viscosityConstant * laplacian * mass[j] / density[j];
+                viscosityForceX += (velocityX[j] - velocityX[i]) * viscosityScale;
+                viscosityForceY += (velocityY[j] - velocityY[i]) * viscosityScale;
+                if (gradient == 0) continue;
+                float pressureScale = pressureMiddle * gradient * mass[j] / density[j] / dist;
+                pressureForceX += rx * pressureScale;
+                pressureForceY += ry * pressureScale;
+            }
+            store.applyForce(i, viscosityForceX, viscosityForceY);
+            store.applyForce(i, pressureForceX, pressureForceY);
+            store.applyForce(i, gravityX * mass[i], gravityY * mass[i]);
+        });
+    }
+
+    // Integrazione in float e spostamento massimo rispetto all'ultima costruzione della lista
+    @Override
+    protected void fusedIntegration(int windowWidth, int windowHeight, double dt) {
+        final float step = (float) dt;
+        double maxDisplacementSquared = scheduler.max(0, store.count, i -> {
+            store.update(i, windowWidth, windowHeight, step);
+            return neighborList.displacementSquared(store, i);
+        });
+        neighborList.checkDisplacement(maxDisplacementSquared);
+    }
+
+    // Metodo di update del fluido, stessa sequenza della pipeline fusa di Fluid
+    public void updateParallel(int windowWidth, int windowHeight, double dt, Vector2D gravity) {
+        long startTime = startSubstep(System.nanoTime());
+        updateFused(windowWidth, windowHeight, dt, gravity, startTime);
+    }
+
+    @Override
+    public void newStep(double dt, int substeps, int windowWidth, int windowHeight) {
+        int simulationWidth = Math.min(windowWidth, boxWidth);
+        int simulationHeight = Math.min(windowHeight, boxHeight);
+        for (int i = 0; i < substeps; i++) {
+            updateParallel(simulationWidth, simulationHeight, dt, gravity);
+        }
+        Metrics.SUBSTEPS.record(substeps);
+        long syncStartTime = System.nanoTime();
+        syncParticles();
+        endPhase(Phase.SYNC, syncStartTime);
+    }
+
+    @Override
+    public boolean isPhaseFused(Phase phase) {
+        return phase == Phase.PRESSURE || phase == Phase.GRAVITY;
+    }
+
+    @Override
+    public int getParticleCount() {
+        return store.count;
+    }
+
+    @Override
+    protected void copyToParticle(int i, Particle p) {
+        store.copyTo(i, p);
+    }
+
+    @Override
+    protected Particle createParticle(int i) {
+        return new Particle(store.radius, new Vector2D(store.positionX[i], store.positionY[i]), new Vector2D(store.velocityX[i], store.velocityY[i]),
+            store.smoothRadius, store.mass[i], store.dampingFactor);
+    }
+
+    @Override
+    protected int[] snapshotIds() {
+        return store.id;
+    }
+
+    @Override
+    protected void buildGrid(SpatialGrid grid) {
+        grid.build(store, scheduler);
+    }
+
+    @Override
+    protected double densityContribution(int j, double distSquared) {
+        float squared = (float) distSquared;
+        if (squared > store.smoothRadius * store.smoothRadius) return 0;
+        return store.mass[j] * pressureKernel.valueSquared(squared);
+    }
+
+    // Metodo per copiare parametri e stato delle particelle in un checkpoint, convertendoli in double
+    @Override
+    public Checkpoint createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint(store.count, store.radius, gridWidth, gridHeight, particles.get(0).smoothRadius, store.dampingFactor,
+            density, pressureConstant, viscosityConstant, gravity.x, gravity.y, neighborList.getSkin(), substepCount);
+        for (int i = 0; i < store.count; i++) {
+            checkpoint.mass[i] = store.mass[i];
+            checkpoint.positionX[i] = store.positionX[i];
+            checkpoint.positionY[i] = store.positionY[i];
+            checkpoint.velocityX[i] = store.velocityX[i];
+            checkpoint.velocityY[i] = store.velocityY[i];
+            checkpoint.particleDensity[i] = store.density[i];
+            checkpoint.pressure[i] = store.pressure[i];
+            checkpoint.id[i] = store.id[i];
+        }
+        return checkpoint;
+    }
+
+    // Metodo per riprendere gli id delle particelle, il motore in float non addormenta le particelle
+    @Override
+    public void restoreState(Checkpoint checkpoint) {
+        super.restoreState(checkpoint);
+        System.arraycopy(checkpoint.contiguousIds(), 0, store.id, 0, store.count);
+    }
+}
@@ -0,0 +1,47 @@
+// Kernel in singola precisione per FloatFluid: come TabulatedKernel campiona valore e derivata
+// di un kernel qualsiasi sulla distanza al quadrato in [0, smoothRadius^2], ma le tabelle e
+// l'interpolazione sono in float, cosí il loop dei neighbor non passa mai per double
+class FloatKernel {
+    public final float smoothRadius;
+    private final float squaredSmoothRadius;
+    private final float[] values;
+    private final float[] gradients;
+    private final float inverseStep;
+
+    // Costruttore, samples é il numero di intervalli della tabella
+    public FloatKernel(Kernel kernel, int samples) {
+        this.smoothRadius = (float) kernel.smoothRadius;
+        this.squaredSmoothRadius = smoothRadius * smoothRadius;
+        this.values = new float[samples + 2];
+        this.gradients = new float[samples + 2];
+        double step = kernel.smoothRadius * kernel.smoothRadius / samples;
+        this.inverseStep = (float) (1.0 / step);
+        for (int k = 0; k <= samples; k++) {
+            double dist = Math.sqrt(k * step);
+            values[k] = (float) kernel.value(dist);
+            gradients[k] = (float) kernel.gradient(dist);
+        }
+        // a distanza nulla la derivata non é definita, si usa il limite per dist -> 0
+        gradients[0] = (float) kernel.gradient(kernel.smoothRadius * 1e-9);
+        values[samples + 1] = values[samples];
+        gradients[samples + 1] = gradients[samples];
+    }
+
+    // Valore del kernel a partire dalla distanza al quadrato
+    public float valueSquared(float distSquared) {
+        if (distSquared < 0 || distSquared > squaredSmoothRadius) return 0;
+        float position = distSquared * inverseStep;
+        int k = (int) position;
+        float t = position - k;
+        return values[k] + (values[k + 1] - values[k]) * t;
+    }
+
+    // Derivata del kernel a partire dalla distanza al quadrato
+    public float gradientSquared(float distSquared) {
+        if (distSquared <= 0 || distSquared > squaredSmoothRadius) return 0;
+        float position = distSquared * inverseStep;
+        int k = (int) position;
+        float t = position - k;
+        return gradients[k] + (gradients[k + 1] - gradients[k]) * t;
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+
+// Versione in singola precisione di ParticleStore: stesse grandezze e stesso modello di
+// integrazione, ma ogni array é un float[], quindi occupa metá memoria e metá banda
+class FloatParticleStore {
+    public final int count;
+    public final float smoothRadius;
+    public final int radius;
+    public final float dampingFactor;
+    public final float[] mass;
+    public final float[] positionX;
+    public final float[] positionY;
+    public final float[] velocityX;
+    public final float[] velocityY;
+    public final float[] accelerationX;
+    public final float[] accelerationY;
+    public final float[] density;
+    public final float[] pressure;
+    // indice originale di ciascuna particella, che segue le particelle nei riordini
+    public final int[] id;
+    private float[] scratch = new float[0];
+
+    // Costruttore, copia lo stato iniziale dalla lista di particelle convertendolo in float
+    public FloatParticleStore(ArrayList<Particle> particles) {
+        this.count = particles.size();
+        Particle first = particles.get(0);
+        this.smoothRadius = (float) first.smoothRadius;
+        this.radius = first.radius;
+        this.dampingFactor = (float) first.dampingFactor;
+        this.mass = new float[count];
+        this.positionX = new float[count];
+        this.positionY = new float[count];
+        this.velocityX = new float[count];
+        this.velocityY = new float[count];
+        this.accelerationX = new float[count];
+        this.accelerationY = new float[count];
+        this.density = new float[count];
+        this.pressure = new float[count];
+        this.id = new int[count];
+        for (int i = 0; i < count; i++) {
+            Particle p = particles.get(i);
+            mass[i] = (float) p.mass;
+            positionX[i] = (float) p.position.x;
+            positionY[i] = (float) p.position.y;
+            velocityX[i] = (float) p.velocity.x;
+            velocityY[i] = (float) p.velocity.y;
+            accelerationX[i] = (float) p.acceleration.x;
+            accelerationY[i] = (float) p.acceleration.y;
+            density[i] = (float) p.density;
+            pressure[i] = (float) p.pressure;
+            id[i] = i;
+        }
+    }
+
+    // Metodo per applicare una forza alla particella i
+    public void applyForce(int i, float forceX, float forceY) {
+        accelerationX[i] += forceX / mass[i];
+        accelerationY[i] += forceY / mass[i];
+    }
+
+    // Metodo per gestire le collisioni al bordo della finestra, stesso modello di ParticleStore
+    private void boundaryForce(int i, int windowWidth, int windowHeight) {
+        float boundaryStiffness = 100.0f;
+        float boundaryDamping = 50.0f;
+
+        if (positionX[i] < radius) {
+            float penetration = radius - positionX[i];
+            applyForce(i, boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityX[i], 0);
+        } else if (positionX[i] > windowWidth - radius) {
+            float penetration = positionX[i] - (windowWidth - radius);
+            applyForce(i, -boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityX[i], 0);
+        }
+
+        if (positionY[i] < radius) {
+            float penetration = radius - positionY[i];
+            applyForce(i, 0, boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityY[i]);
+        } else if (positionY[i] > windowHeight - radius) {
+            float penetration = positionY[i] - (windowHeight - radius);
+            applyForce(i, 0, -boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityY[i]);
+        }
+    }
+
+    // Metodo per aggiornare posizione e velocitá della particella i integrando l'accelerazione
+    public void update(int i, int windowWidth, int windowHeight, float dt) {
+        boundaryForce(i, windowWidth, windowHeight);
+        positionX[i] += velocityX[i] * dt + 0.5f * accelerationX[i] * dt * dt;
+        positionY[i] += velocityY[i] * dt + 0.5f * accelerationY[i] * dt * dt;
+        velocityX[i] += accelerationX[i] * dt;
+        velocityY[i] += accelerationY[i] * dt;
+
+        velocityX[i] *= dampingFactor;
+        velocityY[i] *= dampingFactor;
+        accelerationX[i] = 0;
+        accelerationY[i] = 0;
+    }
+
+    // Metodo per riordinare le particelle in memoria, stessa convenzione di ParticleStore.permute
+    public void permute(int[] order, TileScheduler scheduler) {
+        if (scratch.length < count) {
+            scratch = new float[count];
+        }
+        permute(order, mass, scheduler);
+        permute(order, positionX, scheduler);
+        permute(order, positionY, scheduler);
+        permute(order, velocityX, scheduler);
+        permute(order, velocityY, scheduler);
+        permute(order, accelerationX, scheduler);
+        permute(order, accelerationY, scheduler);
+        permute(order, density, scheduler);
+        permute(order, pressure, scheduler);
+        final int[] ids = id.clone();
+        scheduler.forRange(0, count, k -> id[k] = ids[order[k]]);
+    }
+
+    private void permute(int[] order, float[] values, TileScheduler scheduler) {
+        final float[] scratch = this.scratch;
+        scheduler.forRange(0, count, k -> scratch[k] = values[order[k]]);
+        System.arraycopy(scratch, 0, values, 0, count);
+    }
+
+    // Metodo per ricopiare lo stato della particella i nell'oggetto Particle corrispondente
+    public void copyTo(int i, Particle p) {
+        p.position.x = positionX[i];
+        p.position.y = positionY[i];
+        p.velocity.x = velocityX[i];
+        p.velocity.y = velocityY[i];
+        p.density = density[i];
+        p.pressure = pressure[i];
+    }
+}
@@ -1,100 +1,167 @@
-import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-public class Fluid {
-    private final int boxWidth;
-    private final int boxHeight;
-    private final int gridWidth;
-    private final int gridHeight;
-    private ArrayList<Particle> particles;
-    private ArrayList<Integer>[] cellMatrix;
-    private boolean[] cellOccupied;
-    private final double density;
-    private final double pressureConstant;
-    private final double viscosityConstant;
-    private final Vector2D gravity;
-    private boolean firstStep = true;
+public class Fluid extends AbstractFluid {
+    private final ParticleStore store;
+    private Kernel pressureKernel;
+    private Kernel viscosityKernel;
+    private boolean fusedPasses = false;
+    private boolean vectorKernels = false;
+    private PairEvaluator pairEvaluator = null;
+    private boolean adaptiveTimestep = false;
+    private double courantFactor = 0.2;
+    private double forceFactor = 0.25;
+    private double soundSpeed = 0;
+    private double viscousTimestep = Double.POSITIVE_INFINITY;
+    private double maxStepRate = 0;
+    private int lastFrameSubsteps = 0;
+    private ActivityTracker activity = null;
+    private SlabDomain domain = null;
+    private ParticlePool pool = null;
+    private List<Emitter> emitters = new ArrayList<>();
+    private List<Sink> sinks = new ArrayList<>();
+    private AdaptiveResolution adaptiveResolution = null;
+    private double pendingSourceTime = 0;
+    private int pendingSourceSteps = 0;
+    private static final int SOURCE_INTERVAL = 10;
+    private static final int MAX_SUBSTEP_FACTOR = 20;
     
     // Costruttore
     public Fluid(ArrayList<Particle> particles, double density, double pressureConstant, double viscosityConstant, Vector2D gravity, int gridWidth, int gridHeight) {
-        this.particles = particles;
-        this.density = density;
-        this.pressureConstant = pressureConstant;
-        this.viscosityConstant = viscosityConstant;
-        this.gravity = gravity;
-        this.gridWidth = gridWidth;
-        this.gridHeight = gridHeight;
-        this.boxWidth = (int) (gridWidth * particles.get(0).smoothRadius);
-        this.boxHeight = (int) (gridHeight * particles.get(0).smoothRadius);
-        cellMatrix = new ArrayList[gridWidth * gridHeight];
-        for (int i = 0; i < cellMatrix.length; i++) {
-            cellMatrix[i] = new ArrayList<>();
-        }
-        cellOccupied = new boolean[gridWidth * gridHeight];
-    }
-
-    // Helper method per ottenere l'indice della cella a partire dalle coordinate della cella stessa,
-    private int getCellIndex(int cellX, int cellY) {
-        return cellX + cellY * gridWidth;
-    }
-
-    // Metodo per resettare la matrice delle celle prima di aggiornarla con le nuove posizioni,
-    // solo le celle che erano occupate vengono resettate
-    private void clearCellMatrix() {
-        for (int i = 0; i < cellMatrix.length; i++) {
-            if (cellOccupied[i]) {
-                cellMatrix[i].clear();
-                cellOccupied[i] = false;
-            }
+        super(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+        this.store = new ParticleStore(particles);
+        this.cellGrid = createCellGrid(neighborList.getSkin());
+        this.pressureKernel = new SpikyKernel(store.smoothRadius);
+        this.viscosityKernel = new Poly6Kernel(store.smoothRadius);
+
+        // la griglia viene costruita subito, cosí anche lo step zero usa la ricerca per celle
+        updateCellMatrix();
+    }
+
+    // Metodo per sostituire i kernel di default: pressureKernel é usato per la densitá e per la
+    // forza di pressione, la derivata di viscosityKernel per la forza di viscositá.
+    // Entrambi devono avere lo stesso smoothRadius delle particelle
+    public void setKernels(Kernel pressureKernel, Kernel viscosityKernel) {
+        if (pressureKernel.smoothRadius != store.smoothRadius || viscosityKernel.smoothRadius != store.smoothRadius) {
+            throw new IllegalArgumentException("Kernel smoothRadius does not match the particles smoothRadius");
+        }
+        this.pressureKernel = pressureKernel;
+        this.viscosityKernel = viscosityKernel;
+        updateTimestepLimits();
+        if (vectorKernels) {
+            this.pairEvaluator = PairEvaluator.createVector(pressureKernel, viscosityKernel);
         }
     }
 
-    // Metodo per aggiornare la matrice delle celle per ottimizzare la ricerca delle particelle 
-    // neighbor. l'indice di ciascuna particella viene salvato nell'array delle celle alla posizione corrispondente
-    private void updateCellMatrix() {
-        Particle supportParticle;
-        for (int i = 0; i < particles.size(); i++) {
-            supportParticle = particles.get(i);
-            int cellIndex = getCellIndex((int)supportParticle.cellX, (int)supportParticle.cellY);
-            cellMatrix[cellIndex].add(i);
-            if (!cellOccupied[cellIndex]) {
-                cellOccupied[cellIndex] = true;
-            }
+    // Metodo per attivare il calcolo vettoriale di densitá e forze con la Vector API.
+    // Vale solo con la lista dei neighbor completa e con i kernel spiky e poly6;
+    // se la Vector API non é disponibile resta attivo il percorso scalare
+    public void setVectorKernels(boolean enabled) {
+        this.vectorKernels = enabled;
+        this.pairEvaluator = enabled ? PairEvaluator.createVector(pressureKernel, viscosityKernel) : null;
+    }
+
+    // Metodo per sapere se il percorso vettoriale é effettivamente in uso
+    public boolean isVectorKernelsActive() {
+        return pairEvaluator != null;
+    }
+
+    // Metodo per aggiornare la griglia delle celle per ottimizzare la ricerca delle particelle 
+    // neighbor. Gli indici delle particelle vengono raggruppati per cella con un counting sort parallelo
+    void updateCellMatrix() {
+        cellGrid.build(store, scheduler);
+    }
+
+    // Metodo per usare la griglia sparsa, la nuova griglia viene costruita subito come nel costruttore
+    @Override
+    public void setSparseGrid(boolean enabled) {
+        super.setSparseGrid(enabled);
+        updateCellMatrix();
+    }
+
+    // Metodo per collegare il fluido al dominio di un processo della simulazione distribuita:
+    // le particelle attuali diventano quelle possedute dal processo
+    public void setDomain(SlabDomain domain) {
+        this.domain = domain;
+        domain.attach(store);
+        neighborList.invalidate();
+    }
+
+    // Metodo per attivare emettitori e pozzi, che aggiungono e rimuovono particelle all'inizio di ogni
+    // substep. Store, vista a oggetti e buffer di griglia e lista dei neighbor vengono dimensionati
+    // subito per capacity particelle, oltre le quali le emissioni vengono scartate
+    public void setSources(List<Emitter> emitters, List<Sink> sinks, int capacity) {
+        this.emitters = emitters;
+        this.sinks = sinks;
+        createPool(capacity);
+    }
+
+    // Metodo per attivare la risoluzione adattiva (vedi AdaptiveResolution): le particelle nelle regioni
+    // interne e calme vengono unite fino a maxMerge particelle iniziali e divise vicino a superficie e bordi.
+    // Le particelle hanno da qui in poi smoothing radius e massa propri; baseMass e spacing sono massa
+    // e distanza delle particelle iniziali. Vale con la lista dei neighbor completa e calcolo scalare,
+    // che sostituisce quello vettoriale; capacity dimensiona il pool se non é giá stato creato da setSources
+    public void setAdaptiveResolution(boolean enabled, double baseMass, double spacing, int maxMerge, double calmSpeed, int capacity) {
+        if (!enabled) {
+            this.adaptiveResolution = null;
+            return;
+        }
+        if (neighborList.isHalf()) {
+            throw new IllegalStateException("Adaptive resolution requires the full neighbor list");
+        }
+        store.enableVariableRadius();
+        if (pool == null) {
+            createPool(capacity);
         }
+        this.adaptiveResolution = new AdaptiveResolution(baseMass, store.smoothRadius, spacing, maxMerge, calmSpeed);
+        neighborList.invalidate();
     }
 
-    // Metodo per ottenere la lista degli indici delle particelle neighbor di una specifica
-    // particella. Si intende vicina una particella che si trova nella stessa cella o in una delle
+    // Statistiche della risoluzione adattiva, null se non é attiva
+    public AdaptiveResolution getAdaptiveResolution() {
+        return adaptiveResolution;
+    }
+
+    // Helper method per creare il pool delle particelle, dimensionando subito anche la vista a oggetti
+    private void createPool(int capacity) {
+        this.pool = new ParticlePool(store, capacity);
+        particles.ensureCapacity(capacity);
+        spareParticles.ensureCapacity(capacity);
+    }
+
+    // Pool delle particelle, null se emettitori e pozzi non sono attivi
+    public ParticlePool getPool() {
+        return pool;
+    }
+
+    // Metodo per ottenere la lista degli indici delle particelle neighbor di un punto (x, y).
+    // Si intende vicina una particella che si trova nella stessa cella o in una delle
     // celle del quadrato 3x3 circostante
-    private ArrayList<Integer> getNeighbors(Particle p) {
+    ArrayList<Integer> getNeighbors(double x, double y) {
+        int pCellX = cellGrid.cellX(x);
+        int pCellY = cellGrid.cellY(y);
         ArrayList<Integer> neighbors = new ArrayList<>();
 
-        // Al primo step non viene ancora fatta una compilazione della matrice delle celle, 
-        // si ritornano tutte le particelle
-        if (firstStep) {
-            for (int i = 0; i < particles.size(); i++) {
-                neighbors.add(i);
-            }
-            return neighbors; // Skip neighbor search on first step
-
-        // Negli step successivi, la ricerca avviene come descritto sopra. Le particelle piú lontane
-        // dello smoothingRadius vengono scartate, essendo ininfluenti
-        } else {
-            double squaredSmoothRadius = p.smoothRadius * p.smoothRadius;
-            Vector2D rij = new Vector2D(0, 0);
-            for (int dx = -1; dx <= 1; dx++) {
-                for (int dy = -1; dy <= 1; dy++) {
-                    int cellX = (int)(p.cellX + dx);
-                    int cellY = (int)(p.cellY + dy);
-                    if (cellX < 0 || cellY < 0 || cellX >= gridWidth || cellY >= gridHeight) continue;
-                    for (Integer pjIndex : cellMatrix[getCellIndex(cellX, cellY)]) {
-                        Particle pj = particles.get(pjIndex);
-                        rij.x = pj.position.x - p.position.x;
-                        rij.y = pj.position.y - p.position.y; 
-                        double distSquared = rij.magnitudeSquared();
-                        if (distSquared > squaredSmoothRadius) continue; 
-                        neighbors.add(pjIndex);
-                    }
+        // La griglia é costruita giá nel costruttore, quindi la ricerca avviene sempre come descritto
+        // sopra. Le particelle piú lontane dello smoothingRadius vengono scartate, essendo ininfluenti
+        double squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        int[] sortedIndices = cellGrid.sortedIndices();
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int cellX = pCellX + dx;
+                int cellY = pCellY + dy;
+                int cell = cellGrid.getCellIndex(cellX, cellY);
+                if (cell < 0) continue;
+                int start = cellGrid.cellStart(cell);
+                int end = start + cellGrid.cellCount(cell);
+                for (int k = start; k < end; k++) {
+                    int pjIndex = sortedIndices[k];
+                    double rx = store.positionX[pjIndex] - x;
+                    double ry = store.positionY[pjIndex] - y;
+                    double distSquared = rx * rx + ry * ry;
+                    if (distSquared > squaredSmoothRadius) continue; 
+                    neighbors.add(pjIndex);
                 }
             }
         }
@@ -102,60 +169,505 @@ public class Fluid {
         return neighbors;
     }
 
+    // Metodo per impostare lo skin della lista dei neighbor, la griglia viene ricostruita subito
+    @Override
+    public void setNeighborSkin(double skin) {
+        super.setNeighborSkin(skin);
+        updateCellMatrix();
+    }
+
+    // Metodo per attivare la valutazione simmetrica delle coppie: ogni coppia (i, j) viene visitata
+    // una sola volta e i contributi vengono applicati a entrambe le particelle, dimezzando le
+    // valutazioni dei kernel. Le scritture sui neighbor sono rese sicure dalla colorazione delle tile.
+    // Non é compatibile con l'addormentamento delle particelle e con la risoluzione adattiva
+    // (vedi setSleeping e setAdaptiveResolution)
+    public void setSymmetricPairs(boolean enabled) {
+        if (enabled && activity != null) {
+            throw new IllegalStateException("Symmetric pairs cannot be used with sleeping particles");
+        }
+        if (enabled && store.smoothRadii != null) {
+            throw new IllegalStateException("Symmetric pairs cannot be used with per-particle smoothing radii");
+        }
+        this.neighborList = new NeighborList(neighborList.getSkin(), enabled);
+    }
+
+    // Metodo per attivare la pipeline fusa: la pressione viene calcolata nel loop della densitá,
+    // la gravitá viene applicata nel loop delle forze e il controllo dello spostamento per la lista
+    // dei neighbor avviene durante l'integrazione, riducendo i passaggi completi sulle particelle
+    public void setFusedPasses(boolean enabled) {
+        this.fusedPasses = enabled;
+    }
+
+    // Metodo per sapere se una fase viene eseguita all'interno di un'altra nella pipeline fusa,
+    // nel qual caso il suo tempo é compreso in quello della fase che la contiene
+    public boolean isPhaseFused(Phase phase) {
+        return fusedPasses && (phase == Phase.PRESSURE || phase == Phase.GRAVITY);
+    }
+
+    // Metodo per attivare il passo temporale adattivo: ogni frame copre sempre dt * substeps di tempo
+    // simulato, ma la durata di ciascun substep viene scelta dalle condizioni di stabilitá invece di
+    // essere fissa. courant é il fattore della condizione CFL
+    public void setAdaptiveTimestep(boolean enabled, double courant) {
+        this.adaptiveTimestep = enabled;
+        this.courantFactor = courant;
+        this.maxStepRate = 0;
+        updateTimestepLimits();
+    }
+
+    // Metodo per ottenere il numero di substep eseguiti nell'ultimo frame
+    public int getLastFrameSubsteps() {
+        return lastFrameSubsteps;
+    }
+
+    // Helper method per le costanti delle condizioni di stabilitá.
+    // Con p = k (rho - rho0) e l'accelerazione di pressione divisa per la massa della particella
+    // (non per la densitá) la velocitá del suono é c = sqrt(k * rho0 / m).
+    // La viscositá rilassa la velocitá relativa con un tasso pari a
+    // viscosityConstant / m * integrale di |W'(r)| sul disco di raggio smoothRadius, e un passo
+    // esplicito resta stabile finché é minore di 1 / tasso (ne usiamo metá)
+    private void updateTimestepLimits() {
+        double minMass = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < store.count; i++) {
+            minMass = Math.min(minMass, store.mass[i]);
+        }
+        soundSpeed = Math.sqrt(pressureConstant * density / minMass);
+        int samples = 256;
+        double step = store.smoothRadius / samples;
+        double integral = 0;
+        for (int s = 0; s < samples; s++) {
+            double r = (s + 0.5) * step;
+            integral += Math.abs(viscosityKernel.gradient(r)) * 2 * Math.PI * r * step;
+        }
+        double viscousRate = viscosityConstant / minMass * integral;
+        viscousTimestep = viscousRate > 0 ? 0.5 / viscousRate : Double.POSITIVE_INFINITY;
+    }
+
+    // Inverso del passo massimo consentito dalla particella i: condizione CFL sulla velocitá del
+    // suono piú la velocitá della particella, e condizione sull'accelerazione
+    private double stepRate(int i, double accelerationSquared) {
+        double speed = Math.sqrt(store.velocityX[i] * store.velocityX[i] + store.velocityY[i] * store.velocityY[i]);
+        double smoothRadius = store.smoothRadius;
+        return Math.max((soundSpeed + speed) / (courantFactor * smoothRadius), Math.sqrt(Math.sqrt(accelerationSquared) / (forceFactor * smoothRadius)));
+    }
+
+    // Metodo per attivare l'addormentamento delle particelle ferme (vedi ActivityTracker): una particella
+    // sotto sleepSpeed e sleepAcceleration per sleepSteps substep non viene piú aggiornata finché un
+    // vicino non si muove. Richiede la lista dei neighbor completa, con le coppie simmetriche
+    // ogni coppia aggiorna entrambe le particelle e non é possibile saltarne una sola
+    public void setSleeping(boolean enabled, double sleepSpeed, double sleepAcceleration, int sleepSteps) {
+        if (enabled && neighborList.isHalf()) {
+            throw new IllegalStateException("Sleeping particles require the full neighbor list");
+        }
+        this.activity = enabled ? new ActivityTracker(sleepSpeed, sleepAcceleration, sleepSteps, store.smoothRadius) : null;
+        if (activity != null) {
+            activity.prepare(store.count);
+        }
+        Arrays.fill(store.quietSteps, 0);
+    }
+
+    // Metodo per ottenere la frazione di particelle sveglie, 1 se l'addormentamento non é attivo
+    public double getActiveFraction() {
+        return activity != null ? activity.activeFraction(store) : 1;
+    }
+
+    // Helper method per sapere se la particella i é addormentata
+    private boolean isAsleep(int i) {
+        return activity != null && activity.isAsleep(store, i);
+    }
+
+    // Helper method che integra la particella i, lasciando ferme quelle addormentate.
+    // Ritorna il quadrato dell'accelerazione integrata
+    private double integrate(int i, int windowWidth, int windowHeight, double dt) {
+        return activity != null ? activity.update(store, i, windowWidth, windowHeight, dt) : store.update(i, windowWidth, windowHeight, dt);
+    }
+
+    @Override
+    protected double smoothRadius() {
+        return store.smoothRadius;
+    }
+
+    @Override
+    protected double positionX(int i) {
+        return store.positionX[i];
+    }
+
+    @Override
+    protected double positionY(int i) {
+        return store.positionY[i];
+    }
+
+    @Override
+    protected double velocityX(int i) {
+        return store.velocityX[i];
+    }
+
+    @Override
+    protected double velocityY(int i) {
+        return store.velocityY[i];
+    }
+
+    @Override
+    protected long reorderCell(int i) {
+        return cellMortonIndex(store.cellX[i], store.cellY[i]);
+    }
+
+    @Override
+    protected void permuteStore(int[] order) {
+        store.permute(order, scheduler);
+    }
+
+    @Override
+    protected boolean isNeighborListValid() {
+        return neighborList.isValid(store);
+    }
+
+    @Override
+    protected void buildNeighborList() {
+        updateCellMatrix();
+        neighborList.build(store, cellGrid, scheduler);
+    }
+
+    // Metodo per ricostruire griglia e lista dei neighbor se qualche particella si é spostata
+    // di piú di metá dello skin dall'ultima ricostruzione
+    boolean updateNeighborList() {
+        if (!neighborList.needsRebuild(store, scheduler)) return false;
+        updateCellMatrix();
+        neighborList.build(store, cellGrid, scheduler);
+        return true;
+    }
+
+    // Metodo per forzare la ricostruzione di griglia e lista dei neighbor al prossimo substep,
+    // usato anche dai benchmark per misurare la sola costruzione
+    void invalidateNeighborList() {
+        neighborList.invalidate();
+    }
+
     // Metodo per il calcolo della densitá di ciascuna particella, in relazione a tutti i suoi vicini
-    // in parallelo usando parallelStream essendo le operazioni indipendenti
-    private void calcDensityParallel() {
-        particles.parallelStream().forEach(pi -> {
+    // in parallelo tile per tile essendo le operazioni indipendenti
+    void calcDensityParallel() {
+        if (neighborList.isHalf()) {
+            calcDensitySymmetric();
+            return;
+        }
+        calcDensity(false);
+    }
+
+    // Metodo per il calcolo della densitá con la lista completa, se withPressure é vero la pressione
+    // di ciascuna particella viene calcolata subito dopo la sua densitá nello stesso loop
+    private void calcDensity(boolean withPressure) {
+        if (store.smoothRadii != null) {
+            calcDensityVariable(withPressure);
+            return;
+        }
+        if (pairEvaluator != null) {
+            calcDensityVector(withPressure);
+            return;
+        }
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] mass = store.mass;
+        final Kernel kernel = pressureKernel;
+        final double squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
             double densitySum = 0;
-            Vector2D rij = new Vector2D(0, 0);
-            for (int pjIndex : getNeighbors(pi)) {
-                Particle pj = particles.get(pjIndex);
-                rij.x = pj.position.x - pi.position.x;
-                rij.y = pj.position.y - pi.position.y;
-                double dist = rij.magnitude();
-                densitySum += pj.mass * Utils.spiky(dist, pi.smoothRadius);
+            double xi = positionX[i];
+            double yi = positionY[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                densitySum += mass[j] * kernel.valueSquared(distSquared);
+            }
+            store.density[i] = densitySum;
+            if (withPressure) {
+                store.pressure[i] = Math.max(0, pressureConstant * (densitySum - this.density));
             }
-            pi.density = densitySum;
+        });
+    }
+
+    // Metodo analogo a calcDensity con smoothing radius per particella: la coppia (i, j) usa il kernel
+    // con raggio medio h_ij = (h_i + h_j) / 2, simmetrico nella coppia
+    private void calcDensityVariable(boolean withPressure) {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] mass = store.mass;
+        final double[] radii = store.smoothRadii;
+        final Kernel kernel = pressureKernel;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            double densitySum = 0;
+            double xi = positionX[i];
+            double yi = positionY[i];
+            double hi = radii[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                double h = 0.5 * (hi + radii[j]);
+                if (distSquared > h * h) continue;
+                densitySum += mass[j] * kernel.valueAt(distSquared, h);
+            }
+            store.density[i] = densitySum;
+            if (withPressure) {
+                store.pressure[i] = Math.max(0, pressureConstant * (densitySum - this.density));
+            }
+        });
+    }
+
+    // Metodo analogo a calcDensity che delega la somma sui neighbor al valutatore vettoriale
+    private void calcDensityVector(boolean withPressure) {
+        final PairEvaluator evaluator = pairEvaluator;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            double densitySum = evaluator.density(store, neighbors, neighborList.start(i), neighborList.end(i), i);
+            store.density[i] = densitySum;
+            if (withPressure) {
+                store.pressure[i] = Math.max(0, pressureConstant * (densitySum - this.density));
+            }
+        });
+    }
+
+    // Metodo per il calcolo della densitá con la lista half: ogni particella parte dal proprio
+    // contributo, poi per ogni coppia il valore del kernel viene calcolato una volta e sommato
+    // a entrambe le particelle
+    private void calcDensitySymmetric() {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] mass = store.mass;
+        final double[] density = store.density;
+        final Kernel kernel = pressureKernel;
+        final double selfValue = kernel.valueSquared(0);
+        final double squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forRange(0, store.count, i -> density[i] = mass[i] * selfValue);
+        scheduler.forEachParticleColored(cellGrid, i -> {
+            double densitySum = 0;
+            double xi = positionX[i];
+            double yi = positionY[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                double value = kernel.valueSquared(distSquared);
+                densitySum += mass[j] * value;
+                density[j] += mass[i] * value;
+            }
+            density[i] += densitySum;
         });
     }
 
     // Metodo per il calcolo della pressione di ciascuna particella, in relazione alla 
     // sua densitá e quella di riferimento del liquido (ovvero di una particella nel vuoto)
-    //in parallelo usando parallelStream
-    private void calcPressureParallel() {
-        particles.parallelStream().forEach(p -> {
-            p.pressure = Math.max(0, pressureConstant * (p.density - this.density));
+    // in parallelo tile per tile
+    void calcPressureParallel() {
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            store.pressure[i] = Math.max(0, pressureConstant * (store.density[i] - this.density));
         });
     }
 
     // Metodo che calcola e applica in un unico passaggio entrambe le forze di pressione e viscositá
     // per ridurre il numero di neighbor search
-    private void applyMergedForcesParallel() {
-        particles.parallelStream().forEach(pi -> {
-            Vector2D pressureForce = new Vector2D(0, 0);
-            Vector2D viscosityForce = new Vector2D(0, 0);
-            Vector2D rij = new Vector2D(0, 0);
-            Vector2D velocityDiff = new Vector2D(0, 0);
-            Vector2D direction = new Vector2D(0, 0);
-            for (int pjIndex : getNeighbors(pi)) {
-                Particle pj = particles.get(pjIndex);
-                if (pi == pj) continue;
-                rij.x = pj.position.x - pi.position.x;
-                rij.y = pj.position.y - pi.position.y;
-                double dist = rij.magnitude();
-
-                double pressureMiddle = (pi.pressure + pj.pressure) / 2.0;
-                double gradient = Utils.spikyGradient(dist, pi.smoothRadius);
-                double laplacian = Utils.poly6Gradient(dist, pi.smoothRadius);
-                velocityDiff.x = pj.velocity.x - pi.velocity.x;
-                velocityDiff.y = pj.velocity.y - pi.velocity.y;
-                viscosityForce.addThis(velocityDiff.scaleThis(-viscosityConstant * laplacian * pj.mass / pj.density));
-                if (gradient == 0) continue;  
-                direction = rij.normalizeThis();
-                pressureForce.addThis(direction.scaleThis(pressureMiddle * gradient * pj.mass / pj.density));
+    void applyMergedForcesParallel() {
+        if (neighborList.isHalf()) {
+            applyMergedForcesSymmetric(null);
+            return;
+        }
+        applyMergedForces(null);
+    }
+
+    // Metodo per il calcolo delle forze con la lista completa, se gravity non é null la gravitá
+    // viene applicata a ciascuna particella nello stesso loop, dopo le forze di interazione
+    private void applyMergedForces(Vector2D gravity) {
+        if (store.smoothRadii != null) {
+            applyMergedForcesVariable(gravity);
+            return;
+        }
+        if (pairEvaluator != null) {
+            applyMergedForcesVector(gravity);
+            return;
+        }
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] velocityX = store.velocityX;
+        final double[] velocityY = store.velocityY;
+        final double[] mass = store.mass;
+        final double[] density = store.density;
+        final double[] pressure = store.pressure;
+        final Kernel pressureKernel = this.pressureKernel;
+        final Kernel viscosityKernel = this.viscosityKernel;
+        final double squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            double pressureForceX = 0;
+            double pressureForceY = 0;
+            double viscosityForceX = 0;
+            double viscosityForceY = 0;
+            double xi = positionX[i];
+            double yi = positionY[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                if (i == j) continue;
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                double dist = Math.sqrt(distSquared);
+
+                double pressureMiddle = (pressure[i] + pressure[j]) / 2.0;
+                double gradient = pressureKernel.gradient(dist);
+                double laplacian = viscosityKernel.gradient(dist);
+                double viscosityScale = -viscosityConstant * laplacian * mass[j] / density[j];
+                viscosityForceX += (velocityX[j] - velocityX[i]) * viscosityScale;
+                viscosityForceY += (velocityY[j] - velocityY[i]) * viscosityScale;
+                if (gradient == 0) continue;
+                double pressureScale = pressureMiddle * gradient * mass[j] / density[j] / dist;
+                pressureForceX += rx * pressureScale;
+                pressureForceY += ry * pressureScale;
+            }
+            store.applyForce(i, viscosityForceX, viscosityForceY);
+            store.applyForce(i, pressureForceX, pressureForceY);
+            if (gravity != null) {
+                store.applyForce(i, gravity.x * mass[i], gravity.y * mass[i]);
+            }
+        });
+    }
+
+    // Metodo analogo ad applyMergedForces con smoothing radius per particella, i kernel di ogni coppia
+    // usano il raggio medio h_ij come in calcDensityVariable
+    private void applyMergedForcesVariable(Vector2D gravity) {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] velocityX = store.velocityX;
+        final double[] velocityY = store.velocityY;
+        final double[] mass = store.mass;
+        final double[] density = store.density;
+        final double[] pressure = store.pressure;
+        final double[] radii = store.smoothRadii;
+        final Kernel pressureKernel = this.pressureKernel;
+        final Kernel viscosityKernel = this.viscosityKernel;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            double pressureForceX = 0;
+            double pressureForceY = 0;
+            double viscosityForceX = 0;
+            double viscosityForceY = 0;
+            double xi = positionX[i];
+            double yi = positionY[i];
+            double hi = radii[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                if (i == j) continue;
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                double h = 0.5 * (hi + radii[j]);
+                if (distSquared > h * h) continue;
+                double dist = Math.sqrt(distSquared);
+
+                double pressureMiddle = (pressure[i] + pressure[j]) / 2.0;
+                double gradient = pressureKernel.gradientAt(dist, h);
+                double laplacian = viscosityKernel.gradientAt(dist, h);
+                double viscosityScale = -viscosityConstant * laplacian * mass[j] / density[j];
+                viscosityForceX += (velocityX[j] - velocityX[i]) * viscosityScale;
+                viscosityForceY += (velocityY[j] - velocityY[i]) * viscosityScale;
+                if (gradient == 0) continue;
+                double pressureScale = pressureMiddle * gradient * mass[j] / density[j] / dist;
+                pressureForceX += rx * pressureScale;
+                pressureForceY += ry * pressureScale;
+            }
+            store.applyForce(i, viscosityForceX, viscosityForceY);
+            store.applyForce(i, pressureForceX, pressureForceY);
+            if (gravity != null) {
+                store.applyForce(i, gravity.x * mass[i], gravity.y * mass[i]);
+            }
+        });
+    }
+
+    // Metodo analogo ad applyMergedForces che delega le somme sui neighbor al valutatore vettoriale
+    private void applyMergedForcesVector(Vector2D gravity) {
+        final PairEvaluator evaluator = pairEvaluator;
+        final int[] neighbors = neighborList.indices();
+        final double[] mass = store.mass;
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            evaluator.applyForces(store, neighbors, neighborList.start(i), neighborList.end(i), i, viscosityConstant);
+            if (gravity != null) {
+                store.applyForce(i, gravity.x * mass[i], gravity.y * mass[i]);
+            }
+        });
+    }
+
+    // Metodo analogo ad applyMergedForcesParallel per la lista half: gradiente, laplaciano e distanza
+    // vengono calcolati una volta per coppia, e la forza su j usa massa e densitá di i
+    // con la direzione opposta. Le forze su j vengono sommate direttamente alla sua accelerazione.
+    // Se gravity non é null la gravitá viene applicata a ciascuna particella quando viene visitata come i
+    private void applyMergedForcesSymmetric(Vector2D gravity) {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] velocityX = store.velocityX;
+        final double[] velocityY = store.velocityY;
+        final double[] mass = store.mass;
+        final double[] density = store.density;
+        final double[] pressure = store.pressure;
+        final Kernel pressureKernel = this.pressureKernel;
+        final Kernel viscosityKernel = this.viscosityKernel;
+        final double squaredSmoothRadius = store.smoothRadius * store.smoothRadius;
+        final int[] neighbors = neighborList.indices();
+        scheduler.forEachParticleColored(cellGrid, i -> {
+            double forceX = 0;
+            double forceY = 0;
+            double xi = positionX[i];
+            double yi = positionY[i];
+            double volumeI = mass[i] / density[i];
+            int end = neighborList.end(i);
+            for (int k = neighborList.start(i); k < end; k++) {
+                int j = neighbors[k];
+                double rx = positionX[j] - xi;
+                double ry = positionY[j] - yi;
+                double distSquared = rx * rx + ry * ry;
+                if (distSquared > squaredSmoothRadius) continue;
+                double dist = Math.sqrt(distSquared);
+                double volumeJ = mass[j] / density[j];
+
+                double gradient = pressureKernel.gradient(dist);
+                double laplacian = viscosityKernel.gradient(dist);
+                double viscosity = -viscosityConstant * laplacian;
+                double relativeVelocityX = velocityX[j] - velocityX[i];
+                double relativeVelocityY = velocityY[j] - velocityY[i];
+                double forceJX = -relativeVelocityX * viscosity * volumeI;
+                double forceJY = -relativeVelocityY * viscosity * volumeI;
+                forceX += relativeVelocityX * viscosity * volumeJ;
+                forceY += relativeVelocityY * viscosity * volumeJ;
+                if (gradient != 0) {
+                    double pressureScale = (pressure[i] + pressure[j]) / 2.0 * gradient / dist;
+                    forceX += rx * pressureScale * volumeJ;
+                    forceY += ry * pressureScale * volumeJ;
+                    forceJX -= rx * pressureScale * volumeI;
+                    forceJY -= ry * pressureScale * volumeI;
+                }
+                store.applyForce(j, forceJX, forceJY);
+            }
+            store.applyForce(i, forceX, forceY);
+            if (gravity != null) {
+                store.applyForce(i, gravity.x * mass[i], gravity.y * mass[i]);
             }
-            pi.applyForce(viscosityForce);
-            pi.applyForce(pressureForce);
         });
     }
 
@@ -163,89 +675,177 @@ public class Fluid {
     // Viene profilato il tempo di applicazione di ciascuna forza
     // in parallelo usando i metodi parallelizzati
     // Le forze di pressione e viscositá vengono applicate con il metodo aggregato
-    private void applyForcesParallel(Vector2D gravity, boolean verbose) {
-        double forcesStartTime = System.nanoTime();
+    private void applyForcesParallel(Vector2D gravity) {
+        long forcesStartTime = System.nanoTime();
 
         // Applicazione forze di interazione
         applyMergedForcesParallel();
-        if (verbose) {
-            double mergedForcesTime = System.nanoTime();
-            System.out.println("    Merged Force Time (ms):     " + (mergedForcesTime - forcesStartTime) / 1_000_000.0);
-            forcesStartTime = mergedForcesTime;
-        }
+        forcesStartTime = endPhase(Phase.FORCES, forcesStartTime);
 
         // Applicazione gravitá
-        particles.parallelStream().forEach(p -> {
-            p.applyForce(gravity.scale(p.mass));
+        scheduler.forEachParticle(cellGrid, i -> {
+            if (isAsleep(i)) return;
+            store.applyForce(i, gravity.x * store.mass[i], gravity.y * store.mass[i]);
         });
-        if (verbose) {
-            double gravityTime = System.nanoTime();
-            System.out.println("    Gravity Force Time (ms):    " + (gravityTime - forcesStartTime) / 1_000_000.0);
-        }
+        endPhase(Phase.GRAVITY, forcesStartTime);
     }
 
     // Metodo di update generale del fluido, che aggiorna: densitá, pressione, forze e posizione di 
-    // ciascuna particella, oltre ad aggiornare la matrice delle celle
+    // ciascuna particella, oltre ad aggiornare griglia e lista dei neighbor quando necessario
     // Vengono profilati i tempi di esecuzione di ciascun metodo
-    public void updateParallel(int windowWidth, int windowHeight, double dt, Vector2D gravity, boolean verbose) {
-        double startTime = System.nanoTime();
+    public void updateParallel(int windowWidth, int windowHeight, double dt, Vector2D gravity) {
+        // riordino periodico delle particelle lungo la curva di Morton
+        long startTime = startSubstep(System.nanoTime());
+
+        // emettitori e pozzi: aggiungere o togliere particelle sposta le altre nello store e costringe
+        // a ricostruire griglia e lista dei neighbor, quindi vengono aggiornati solo quando la lista
+        // é giá da ricostruire o al piú ogni SOURCE_INTERVAL substep. Gli strati emessi in ritardo
+        // partono giá avanzati del tempo trascorso, le particelle nei pozzi restano qualche substep in piú
+        if (!emitters.isEmpty() || !sinks.isEmpty()) {
+            pendingSourceTime += dt;
+            if (++pendingSourceSteps >= SOURCE_INTERVAL || !neighborList.isValid(store)) {
+                if (updateSources(pendingSourceTime)) {
+                    neighborList.invalidate();
+                }
+                pendingSourceTime = 0;
+                pendingSourceSteps = 0;
+            }
+            startTime = endPhase(Phase.SOURCES, startTime);
+        }
+
+        // simulazione distribuita: scambio di migranti e ghost con i processi vicini. Finché lo scambio
+        // mantiene la disposizione dello store la lista dei neighbor resta valida, purché anche le
+        // ghost, le cui posizioni arrivano dai vicini, non si siano spostate di piú di skin / 2
+        if (domain != null) {
+            boolean reselect = !neighborList.isValid(domain.getOwnedCount() + domain.getGhostCount());
+            if (domain.exchange(store, reselect)) {
+                neighborList.invalidate();
+            } else {
+                final double maxDisplacementSquared = scheduler.max(domain.getOwnedCount(), store.count, i -> neighborList.displacementSquared(store, i));
+                neighborList.checkDisplacement(maxDisplacementSquared);
+            }
+            startTime = endPhase(Phase.HALO, startTime);
+        }
+
+        if (fusedPasses) {
+            updateFused(windowWidth, windowHeight, dt, gravity, startTime);
+            dropGhosts();
+            adaptResolution(windowWidth, windowHeight);
+            return;
+        }
+
+        // aggiornamento di griglia e lista dei neighbor, solo se necessario
+        updateNeighborList();
+        startTime = endPhase(Phase.NEIGHBORS, startTime);
 
         // calcolo densitá
         calcDensityParallel();
-        if (verbose) {
-            double densityTime = System.nanoTime();
-            System.out.println("Density Calc Time (ms):         " + (densityTime - startTime) / 1_000_000.0);
-            startTime = densityTime;
-        }
+        startTime = endPhase(Phase.DENSITY, startTime);
 
         // calcolo pressione
         calcPressureParallel();
-        if (verbose) {
-            double pressureTime = System.nanoTime();
-            System.out.println("Pressure Calc Time (ms):        " + (pressureTime - startTime) / 1_000_000.0);
-            startTime = pressureTime;
-        }
+        startTime = endPhase(Phase.PRESSURE, startTime);
 
         // applicazione forze
-        applyForcesParallel(gravity, verbose);
-        if (verbose) {
-            double forcesTime = System.nanoTime();
-            System.out.println("Forces Application Time (ms):   " + (forcesTime - startTime) / 1_000_000.0);
-            startTime = forcesTime;
+        applyForcesParallel(gravity);
+        startTime = System.nanoTime();
+
+        // aggiornamento posizione e velocitá delle particelle, con il passo adattivo nello stesso
+        // passaggio viene calcolato il passo massimo per il substep successivo
+        if (adaptiveTimestep) {
+            maxStepRate = scheduler.max(0, store.count, i -> stepRate(i, integrate(i, windowWidth, windowHeight, dt)));
+        } else {
+            scheduler.forEachParticle(cellGrid, i -> {
+                integrate(i, windowWidth, windowHeight, dt);
+            });
         }
+        if (activity != null) {
+            activity.wake(store, scheduler);
+        }
+        dropGhosts();
+        endPhase(Phase.INTEGRATION, startTime);
+        adaptResolution(windowWidth, windowHeight);
+    }
 
-        // aggiornamento posizione e velocitá delle particelle
-        particles.parallelStream().forEach(p -> {
-            p.update(windowWidth, windowHeight, dt, gravity);
-        });
-        if (verbose) {
-            double updateTime = System.nanoTime();
-            System.out.println("Particles Update Time (ms):     " + (updateTime - startTime) / 1_000_000.0);
-            startTime = updateTime;
-        }
-
-        // pulizia e aggiornamento della matrice dei neighbor
-        if (firstStep == false) {
-            clearCellMatrix();
-            if (verbose) {
-                double clearTime = System.nanoTime();
-                System.out.println("Cell Matrix Clear Time (ms):    " + (clearTime - startTime) / 1_000_000.0);
-                startTime = clearTime;
-            }
+    // Helper method per unire e dividere le particelle con la risoluzione adattiva
+    private void adaptResolution(int windowWidth, int windowHeight) {
+        if (adaptiveResolution == null) return;
+        long startTime = System.nanoTime();
+        if (adaptiveResolution.update(store, pool, neighborList, scheduler, windowWidth, windowHeight)) {
+            neighborList.invalidate();
         }
+        endPhase(Phase.RESOLUTION, startTime);
+    }
 
-        updateCellMatrix();
-        if (verbose) {
-            double cellMatrixTime = System.nanoTime();
-            System.out.println("Cell Matrix Update Time (ms):   " + (cellMatrixTime - startTime) / 1_000_000.0);
+    // Helper method per rimuovere le particelle entrate nei pozzi e aggiungere quelle emesse,
+    // ritorna true se lo store é cambiato
+    private boolean updateSources(double dt) {
+        int changed = 0;
+        for (Sink sink : sinks) {
+            changed += sink.drain(store, pool);
+        }
+        for (Emitter emitter : emitters) {
+            changed += emitter.emit(store, pool, dt);
+        }
+        return changed > 0;
+    }
+
+    // Helper method per scartare le ghost alla fine del substep, sono state integrate
+    // insieme alle altre particelle ma la loro posizione viene aggiornata dal processo che le possiede
+    private void dropGhosts() {
+        if (domain != null) {
+            domain.dropGhosts(store);
+        }
+    }
+
+    // Densitá e pressione della pipeline fusa, con la lista half la densitá é completa solo
+    // alla fine del passaggio e la pressione viene calcolata dopo
+    @Override
+    protected void fusedDensityPressure() {
+        if (neighborList.isHalf()) {
+            calcDensitySymmetric();
+            calcPressureParallel();
+        } else {
+            calcDensity(true);
+        }
+    }
+
+    // Forze di interazione e gravitá della pipeline fusa
+    @Override
+    protected void fusedForces(Vector2D gravity) {
+        if (neighborList.isHalf()) {
+            applyMergedForcesSymmetric(gravity);
+        } else {
+            applyMergedForces(gravity);
         }
+    }
 
-        // ricerca completa dei neighbor solo al primo step
-        firstStep = false;
+    // Integrazione e spostamento massimo rispetto all'ultima costruzione della lista, con il passo
+    // adattivo anche il passo massimo per il substep successivo
+    @Override
+    protected void fusedIntegration(int windowWidth, int windowHeight, double dt) {
+        if (adaptiveTimestep) {
+            double[] max = scheduler.max(0, store.count, 2, (i, partial) -> {
+                double accelerationSquared = integrate(i, windowWidth, windowHeight, dt);
+                partial[0] = Math.max(partial[0], neighborList.displacementSquared(store, i));
+                partial[1] = Math.max(partial[1], stepRate(i, accelerationSquared));
+            });
+            neighborList.checkDisplacement(max[0]);
+            maxStepRate = max[1];
+        } else {
+            double maxDisplacementSquared = scheduler.max(0, store.count, i -> {
+                integrate(i, windowWidth, windowHeight, dt);
+                return neighborList.displacementSquared(store, i);
+            });
+            neighborList.checkDisplacement(maxDisplacementSquared);
+        }
+        if (activity != null) {
+            activity.wake(store, scheduler);
+        }
     }
 
     // Metodo per eseguire un nuovo step di simulazione, ovvero un ciclo di substeps
-    public void newStep(double dt, int substeps, int windowWidth, int windowHeight, boolean verbose) {
+    public void newStep(double dt, int substeps, int windowWidth, int windowHeight) {
         int simulationWidth = windowWidth;
         int simulationHeight = windowHeight;
         if (windowWidth > boxWidth) {
@@ -254,62 +854,129 @@ public class Fluid {
         if (windowHeight > boxHeight) {
             simulationHeight = boxHeight;
         }
-        for (int i = 0; i < substeps; i++) {
-            if (verbose) {
-                System.out.println("---- Substep " + (i + 1) + "/" + substeps + " ----");
-                double computeTime = System.nanoTime();
-                updateParallel(simulationWidth, simulationHeight, dt, gravity, verbose);
-                System.out.println("Update Time (ms):               " + (System.nanoTime() - computeTime) / 1_000_000.0);
-            } else {
-                updateParallel(simulationWidth, simulationHeight, dt, gravity, verbose);
+        if (adaptiveTimestep) {
+            advanceAdaptive(dt * substeps, substeps, simulationWidth, simulationHeight);
+        } else {
+            for (int i = 0; i < substeps; i++) {
+                updateParallel(simulationWidth, simulationHeight, dt, gravity);
             }
+            lastFrameSubsteps = substeps;
         }
+        Metrics.SUBSTEPS.record(lastFrameSubsteps);
+        if (activity != null) {
+            Metrics.ACTIVE.record(activity.activeFraction(store));
+        }
+        long syncStartTime = System.nanoTime();
+        syncParticles();
+        endPhase(Phase.SYNC, syncStartTime);
     }
 
-    // Metodo per ottenere la lista delle particelle, usato dall'oggetto rendering
-    public ArrayList<Particle> getParticles() {
-        return particles;
+    // Metodo per avanzare di frameTime con substep di durata variabile. Il passo di ogni substep é il
+    // minimo tra le condizioni CFL e di accelerazione (calcolate durante l'integrazione del substep
+    // precedente) e la condizione di viscositá; il tempo rimanente viene poi diviso in passi uguali,
+    // cosí l'ultimo substep del frame non é mai molto piú corto degli altri.
+    // Il passo non scende sotto frameTime / (MAX_SUBSTEP_FACTOR * substeps), che limita il costo
+    // di un frame anche se la simulazione diverge
+    private void advanceAdaptive(double frameTime, int substeps, int simulationWidth, int simulationHeight) {
+        if (maxStepRate == 0) {
+            maxStepRate = scheduler.max(0, store.count, i -> stepRate(i, 0));
+        }
+        double minStep = frameTime / (MAX_SUBSTEP_FACTOR * substeps);
+        double time = 0;
+        int steps = 0;
+        while (frameTime - time > 1e-9 * frameTime) {
+            double remaining = frameTime - time;
+            double step = Math.min(viscousTimestep, maxStepRate > 0 ? 1 / maxStepRate : remaining);
+            step = Math.max(minStep, Math.min(step, remaining));
+            step = remaining / Math.ceil(remaining / step);
+            updateParallel(simulationWidth, simulationHeight, step, gravity);
+            time += step;
+            steps++;
+        }
+        lastFrameSubsteps = steps;
     }
 
-    // Metodo per otterenere le dimensioni del box di simulazione, usato dall'oggetto rendering
-    public Vector2D returnBoundary() {
-        return new Vector2D(boxWidth, boxHeight);
+    // Metodo per ottenere il numero di particelle simulate
+    public int getParticleCount() {
+        return store.count;
     }
 
-    // Metodo per visualizzare la densitá del fluido
-    // Usata solo per debug
-    public void showDensity(Graphics2D g, int windowWidth, int windowHeight) {
-        // TODO: Optimize with parallel processing
-        double maxDensity = 0;
-        double[][] densityField = new double[windowWidth][windowHeight];
-        Particle mockParticle = new Particle(0, new Vector2D(0,0), new Vector2D(0,0), particles.get(0).smoothRadius, 0, 0);
-        for (int x = 0; x < windowWidth; x ++) {
-            mockParticle.position.x = x;
-            for (int y = 0; y < windowHeight; y ++) {
-                mockParticle.position.y = y;
-                mockParticle.updateCell();
-                double densitySum = 0;
-                for (Integer pjIndex : getNeighbors(mockParticle)) {
-                    Particle pj = particles.get(pjIndex);
-                    Vector2D rij = new Vector2D(pj.position.x - x, pj.position.y - y);
-                    double dist = rij.magnitude();
-                    densitySum += pj.mass * Utils.spiky(dist, pj.smoothRadius);
-                }
-                densityField[x][y] = densitySum;
+    // Metodo per copiare parametri e stato delle particelle in un checkpoint
+    public Checkpoint createCheckpoint() {
+        Checkpoint checkpoint = new Checkpoint(store.count, store.radius, gridWidth, gridHeight, store.smoothRadius, store.dampingFactor,
+            density, pressureConstant, viscosityConstant, gravity.x, gravity.y, neighborList.getSkin(), substepCount);
+        System.arraycopy(store.mass, 0, checkpoint.mass, 0, store.count);
+        System.arraycopy(store.positionX, 0, checkpoint.positionX, 0, store.count);
+        System.arraycopy(store.positionY, 0, checkpoint.positionY, 0, store.count);
+        System.arraycopy(store.velocityX, 0, checkpoint.velocityX, 0, store.count);
+        System.arraycopy(store.velocityY, 0, checkpoint.velocityY, 0, store.count);
+        System.arraycopy(store.density, 0, checkpoint.particleDensity, 0, store.count);
+        System.arraycopy(store.pressure, 0, checkpoint.pressure, 0, store.count);
+        System.arraycopy(store.id, 0, checkpoint.id, 0, store.count);
+        System.arraycopy(store.quietSteps, 0, checkpoint.quietSteps, 0, store.count);
+        if (store.smoothRadii != null) {
+            System.arraycopy(store.smoothRadii, 0, checkpoint.smoothRadii, 0, store.count);
+        }
+        return checkpoint;
+    }
 
-                if (densitySum > maxDensity) {
-                    maxDensity = densitySum;
-                }
-            }
+    // Metodo per riprendere id, substep di quiete e smoothing radius delle particelle, da chiamare dopo
+    // setSleeping, che azzera i substep di quiete, e prima di setSources, che ricava gli id liberi da
+    // quelli in uso. Se il checkpoint ha raggi diversi tra le particelle (risoluzione adattiva) il fluido
+    // passa ai raggi per particella, che come in setAdaptiveResolution richiedono la lista completa
+    @Override
+    public void restoreState(Checkpoint checkpoint) {
+        if (checkpoint.hasVariableRadius() && neighborList.isHalf()) {
+            throw new IllegalStateException("Per-particle smoothing radii require the full neighbor list");
+        }
+        super.restoreState(checkpoint);
+        System.arraycopy(checkpoint.contiguousIds(), 0, store.id, 0, store.count);
+        System.arraycopy(checkpoint.quietSteps, 0, store.quietSteps, 0, store.count);
+        if (checkpoint.hasVariableRadius()) {
+            store.enableVariableRadius();
+            System.arraycopy(checkpoint.smoothRadii, 0, store.smoothRadii, 0, store.count);
+            store.maxSmoothRadius = Arrays.stream(store.smoothRadii, 0, store.count).max().orElse(store.smoothRadius);
+            neighborList.invalidate();
         }
+    }
 
-        // System.out.println("Max Density: " + maxDensity);
-        for (int x = 0; x < windowWidth; x ++) {
-            for (int y = 0; y < windowHeight; y ++) {
-                int colorValue = (int) Math.min(255, densityField[x][y] / maxDensity * 255);
-                g.setColor(new Color(colorValue, 0, 0));
-                g.fillRect(x, y, 1, 1);
-            }
+    @Override
+    protected void copyToParticle(int i, Particle p) {
+        store.copyTo(i, p);
+    }
+
+    @Override
+    protected Particle createParticle(int i) {
+        return new Particle(store.radius, new Vector2D(store.positionX[i], store.positionY[i]), new Vector2D(store.velocityX[i], store.velocityY[i]),
+            store.smoothRadius, store.mass[i], store.dampingFactor);
+    }
+
+    // Le particelle vengono scritte nella snapshot nella posizione del proprio id, stabile nei riordini;
+    // con emettitori e pozzi gli id non sono piú contigui e si usa l'ordine dello store
+    @Override
+    protected int[] snapshotIds() {
+        return pool == null ? store.id : null;
+    }
+
+    @Override
+    protected void buildGrid(SpatialGrid grid) {
+        grid.build(store, scheduler);
+    }
+
+    @Override
+    protected double maxSmoothRadius() {
+        return store.maxSmoothRadius;
+    }
+
+    // Con i raggi per particella il campo usa lo smoothing radius della particella j
+    @Override
+    protected double densityContribution(int j, double distSquared) {
+        if (store.smoothRadii != null) {
+            double h = store.smoothRadii[j];
+            if (distSquared > h * h) return 0;
+            return store.mass[j] * pressureKernel.valueAt(distSquared, h);
         }
+        if (distSquared > store.smoothRadius * store.smoothRadius) return 0;
+        return store.mass[j] * pressureKernel.valueSquared(distSquared);
     }
 }
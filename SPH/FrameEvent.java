@@ -0,0 +1,26 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Evento JFR emesso alla fine di ogni frame di simulazione
+@Name("sph.Frame")
+@Label("SPH Frame")
+@Category("SPH")
+@Description("Duration of one simulation frame, made of all its substeps")
+class FrameEvent extends Event {
+    @Label("Frame")
+    long frame;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long nanos;
+
+    @Label("Particles")
+    int particles;
+
+    @Label("Neighbors per Particle")
+    double averageNeighbors;
+}
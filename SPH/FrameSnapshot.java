@@ -0,0 +1,32 @@
+// Fotografia dello stato delle particelle alla fine di un frame, usata dal rendering.
+// Posizioni e velocitá sono salvate in float interlacciati (x0, y0, x1, y1, ...).
+// Una snapshot viene scritta solo dal thread di simulazione mentre é il suo buffer di lavoro,
+// e dopo la pubblicazione viene solo letta, quindi il rendering non ha bisogno di lock
+class FrameSnapshot {
+    public int count;
+    public int radius;
+    public long frame;
+    public float[] positions = new float[0];
+    public float[] velocities = new float[0];
+    // campo di densitá opzionale, un campione ogni densityResolution pixel (densityWidth = 0 se assente)
+    public int densityWidth;
+    public int densityHeight;
+    public int densityResolution;
+    public float maxDensity;
+    public float[] density = new float[0];
+
+    // Metodo per garantire che i vettori possano contenere count particelle
+    public void ensureCapacity(int count) {
+        if (positions.length < 2 * count) {
+            positions = new float[2 * count];
+            velocities = new float[2 * count];
+        }
+    }
+
+    // Metodo per garantire che il campo di densitá possa contenere samples campioni
+    public void ensureDensityCapacity(int samples) {
+        if (density.length < samples) {
+            density = new float[samples];
+        }
+    }
+}
@@ -0,0 +1,27 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Canale di comunicazione tra i processi della simulazione distribuita. I processi sono disposti
+// in fila, uno per slab di colonne della griglia, e ciascuno comunica solo con il vicino a sinistra
+// e con quello a destra. I messaggi sono blocchi di byte: l'ordine di invio e ricezione tra due
+// vicini é deciso da chi li usa (SlabDomain), il transport deve solo consegnarli nell'ordine di invio
+interface HaloTransport extends Closeable {
+    int LEFT = 0;
+    int RIGHT = 1;
+
+    // Indice del processo, da 0 (slab piú a sinistra) a getProcesses() - 1
+    int getRank();
+
+    int getProcesses();
+
+    // Metodo per sapere se esiste il vicino dal lato side (LEFT o RIGHT)
+    boolean hasNeighbor(int side);
+
+    // Metodo per inviare al vicino i byte tra position e limit del messaggio
+    void send(int side, ByteBuffer message) throws IOException;
+
+    // Metodo per ricevere il prossimo messaggio del vicino, il buffer restituito resta valido
+    // fino alla ricezione successiva dallo stesso lato
+    ByteBuffer receive(int side) throws IOException;
+}
@@ -0,0 +1,303 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntToLongFunction;
+
+// Griglia delle celle sparsa: invece di un array per tutte le celle del box, una tabella hash ad
+// indirizzamento aperto (linear probing su array primitivi) associa la chiave di ogni cella occupata
+// all'intervallo delle sue particelle in sortedIndices. Memoria e costo di azzeramento dipendono
+// dal numero di celle occupate e non dall'area del dominio, e le coordinate delle celle non sono
+// limitate a un box: le particelle fuori dalla finestra finiscono nelle proprie celle invece di
+// essere assegnate alla cella di bordo.
+// Nella tabella la chiave di una cella sono le sue coordinate spostate di MAX_CELL per renderle
+// positive, affiancate in un long. Le celle occupate vengono poi ordinate per indice di Morton,
+// cosí celle consecutive sono vicine nello spazio e ogni tile allineata di 2^k x 2^k celle é un
+// intervallo contiguo di celle e quindi di sortedIndices.
+// Per questo la tile effettiva é la potenza di due non superiore al tileSize richiesto
+class HashedCellGrid implements SpatialGrid {
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+    // coordinate delle celle limitate a [-MAX_CELL, MAX_CELL), cosí chiave e indice di Morton
+    // occupano 62 bit e non coincidono mai con EMPTY
+    private static final int MAX_CELL = 1 << 30;
+    private static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 64;
+    private static final int MAX_OVERSIZE = 4;
+
+    public final double cellSize;
+    private long[] slotKey = new long[0];
+    private int[] slotStart = new int[0];
+    private int[] slotCount = new int[0];
+    private int hashShift;
+    private final int[] reserved = new int[1];
+    private long[] cellOrder = new long[0];
+    private int[] cellSlot = new int[0];
+    private int cellTotal = 0;
+    private int[] particleSlot = new int[0];
+    private int[] particleRank = new int[0];
+    private int[] sortedIndices = new int[0];
+    private int particleTotal = 0;
+    private long[] tileKeys = new long[0];
+    private int[] tileStart = new int[0];
+    private int tileTotal = 0;
+    private int tileShift = -1;
+
+    // Costruttore, cellSize é il lato delle celle e deve essere almeno pari al raggio di ricerca
+    public HashedCellGrid(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    @Override
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    // Numero di celle occupate dopo l'ultima costruzione
+    public int getOccupiedCells() {
+        return cellTotal;
+    }
+
+    // Numero di posizioni della tabella hash, proporzionale alle celle occupate e non all'area del dominio
+    public int getCapacity() {
+        return slotKey.length;
+    }
+
+    @Override
+    public int cellX(double x) {
+        return clamp(Math.floor(x / cellSize));
+    }
+
+    @Override
+    public int cellY(double y) {
+        return clamp(Math.floor(y / cellSize));
+    }
+
+    private static int clamp(double cell) {
+        return (int) Math.max(-MAX_CELL, Math.min(cell, MAX_CELL - 1));
+    }
+
+    // Helper method per ottenere la chiave della cella nella tabella
+    private static long key(int cellX, int cellY) {
+        return ((long) (cellX + MAX_CELL) << 31) | (cellY + MAX_CELL);
+    }
+
+    // Helper method per ottenere l'indice di Morton della cella a partire dalla chiave
+    private static long mortonIndex(long key) {
+        return AbstractFluid.mortonIndex((int) (key >>> 31), (int) (key & Integer.MAX_VALUE));
+    }
+
+    // Helper method inverso di mortonIndex
+    private static long keyOfMorton(long morton) {
+        return ((long) compactBits(morton) << 31) | compactBits(morton >>> 1);
+    }
+
+    // Helper method inverso di spreadBits, raccoglie i bit pari di value
+    private static int compactBits(long value) {
+        long v = value & 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+
+    // Posizione iniziale della chiave nella tabella, con hashing moltiplicativo sui bit alti
+    // (celle vicine hanno chiavi che differiscono in pochi bit)
+    private int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> hashShift);
+    }
+
+    // Indice della cella di coordinate (cellX, cellY), cioé la sua posizione nella tabella,
+    // -1 se la cella non contiene particelle
+    @Override
+    public int getCellIndex(int cellX, int cellY) {
+        if (cellX < -MAX_CELL || cellY < -MAX_CELL || cellX >= MAX_CELL || cellY >= MAX_CELL) return -1;
+        return find(key(cellX, cellY));
+    }
+
+    private int find(long key) {
+        int mask = slotKey.length - 1;
+        for (int slot = hash(key); ; slot = (slot + 1) & mask) {
+            long current = slotKey[slot];
+            if (current == key) return slot;
+            if (current == EMPTY) return -1;
+        }
+    }
+
+    // Metodo per inserire la chiave nella tabella da piú thread, ritorna la posizione della chiave
+    // o -1 se la tabella ha giá raggiunto limit celle. Ogni nuova cella prenota prima un posto
+    // nel contatore reserved, quindi la tabella non supera mai limit celle e il probing termina
+    private int insert(long key, int limit) {
+        int mask = slotKey.length - 1;
+        int slot = hash(key);
+        while (true) {
+            long current = (long) LONG_ARRAY.getVolatile(slotKey, slot);
+            if (current == key) return slot;
+            if (current == EMPTY) {
+                if ((int) INT_ARRAY.getAndAdd(reserved, 0, 1) >= limit) return -1;
+                if (LONG_ARRAY.compareAndSet(slotKey, slot, EMPTY, key)) return slot;
+                // un altro thread ha occupato la posizione, si rilascia il posto e si rilegge
+                INT_ARRAY.getAndAdd(reserved, 0, -1);
+                continue;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Helper method che dimensiona la tabella per expected celle con fattore di carico al piú 1/2,
+    // riallocandola solo se quella attuale é troppo piccola o piú di MAX_OVERSIZE volte piú grande della
+    // capacitá richiesta (fattore di carico sotto 1/8): le oscillazioni del numero di celle occupate tra
+    // una costruzione e l'altra non causano riallocazioni, e la memoria resta proporzionale alle celle
+    private void ensureCapacity(int expected) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, 2 * expected - 1)) << 1);
+        if (slotKey.length >= capacity && slotKey.length <= MAX_OVERSIZE * capacity) return;
+        slotKey = new long[capacity];
+        slotStart = new int[capacity];
+        slotCount = new int[capacity];
+        hashShift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    @Override
+    public void build(ParticleStore store, TileScheduler scheduler) {
+        build(store.count, i -> key(cellX(store.positionX[i]), cellY(store.positionY[i])), scheduler);
+    }
+
+    @Override
+    public void build(FloatParticleStore store, TileScheduler scheduler) {
+        build(store.count, i -> key(cellX(store.positionX[i]), cellY(store.positionY[i])), scheduler);
+    }
+
+    // Metodo di supporto comune ai due build, keyOf restituisce la chiave della cella della particella i:
+    // 1. inserimento parallelo delle chiavi nella tabella, ogni particella incrementa atomicamente
+    //    il contatore della sua cella e ne ricava la propria posizione (rank) all'interno della cella.
+    //    La tabella é dimensionata sulle celle occupate della costruzione precedente: se si riempie
+    //    oltre 3/4 viene ingrandita e il passaggio ripetuto
+    // 2. le celle occupate vengono ordinate per indice di Morton, e gli inizi delle celle assegnati in quell'ordine
+    // 3. scatter parallelo degli indici nella posizione finale
+    // Infine gli indici di ogni cella vengono ordinati, cosí l'ordine non dipende dallo scheduling dei thread
+    private void build(int count, IntToLongFunction keyOf, TileScheduler scheduler) {
+        if (particleSlot.length < count) {
+            particleSlot = new int[count + count / 8];
+            particleRank = new int[count + count / 8];
+            sortedIndices = new int[count + count / 8];
+        }
+        final int[] particleSlot = this.particleSlot;
+        final int[] particleRank = this.particleRank;
+        final int[] sortedIndices = this.sortedIndices;
+
+        int expected = Math.min(cellTotal, count);
+        while (true) {
+            ensureCapacity(expected);
+            Arrays.fill(slotKey, EMPTY);
+            Arrays.fill(slotCount, 0);
+            reserved[0] = 0;
+            final int limit = slotKey.length / 4 * 3;
+            final int[] slotCount = this.slotCount;
+            scheduler.forRange(0, count, i -> {
+                int slot = insert(keyOf.applyAsLong(i), limit);
+                particleSlot[i] = slot;
+                if (slot >= 0) {
+                    particleRank[i] = (int) INT_ARRAY.getAndAdd(slotCount, slot, 1);
+                }
+            });
+            if (reserved[0] <= limit) break;
+            expected = 2 * limit;
+        }
+
+        if (cellOrder.length < slotKey.length) {
+            cellOrder = new long[slotKey.length];
+            cellSlot = new int[slotKey.length];
+        }
+        int cells = 0;
+        for (long key : slotKey) {
+            if (key != EMPTY) cellOrder[cells++] = mortonIndex(key);
+        }
+        final int cellTotal = cells;
+        final long[] cellOrder = this.cellOrder;
+        scheduler.invoke(() -> Arrays.parallelSort(cellOrder, 0, cellTotal));
+        int start = 0;
+        for (int c = 0; c < cellTotal; c++) {
+            int slot = find(keyOfMorton(cellOrder[c]));
+            cellSlot[c] = slot;
+            slotStart[slot] = start;
+            start += slotCount[slot];
+        }
+
+        final int[] slotStart = this.slotStart;
+        scheduler.forRange(0, count, i -> {
+            sortedIndices[slotStart[particleSlot[i]] + particleRank[i]] = i;
+        });
+
+        final int[] slotCount = this.slotCount;
+        final int[] cellSlot = this.cellSlot;
+        scheduler.forRange(0, cellTotal, c -> {
+            int slot = cellSlot[c];
+            if (slotCount[slot] > 1) {
+                Arrays.sort(sortedIndices, slotStart[slot], slotStart[slot] + slotCount[slot]);
+            }
+        });
+
+        this.cellTotal = cellTotal;
+        this.particleTotal = count;
+        this.tileShift = -1;
+    }
+
+    @Override
+    public int cellStart(int cell) {
+        return slotStart[cell];
+    }
+
+    @Override
+    public int cellCount(int cell) {
+        return slotCount[cell];
+    }
+
+    @Override
+    public int[] sortedIndices() {
+        return sortedIndices;
+    }
+
+    // Le tile sono solo quelle con almeno una cella occupata, in ordine di Morton, e vengono
+    // ricavate raggruppando gli indici di Morton ordinati che coincidono a meno degli ultimi 2k bit
+    @Override
+    public int tileCount(int tileSize) {
+        int shift = 31 - Integer.numberOfLeadingZeros(Math.max(1, tileSize));
+        if (shift == tileShift) return tileTotal;
+        if (tileStart.length < cellTotal + 1) {
+            tileKeys = new long[cellTotal];
+            tileStart = new int[cellTotal + 1];
+        }
+        int tiles = 0;
+        for (int c = 0; c < cellTotal; c++) {
+            long tileKey = cellOrder[c] >>> (2 * shift);
+            if (tiles == 0 || tileKeys[tiles - 1] != tileKey) {
+                tileKeys[tiles] = tileKey;
+                tileStart[tiles] = slotStart[cellSlot[c]];
+                tiles++;
+            }
+        }
+        tileStart[tiles] = particleTotal;
+        tileTotal = tiles;
+        tileShift = shift;
+        return tiles;
+    }
+
+    @Override
+    public int tileX(int tile, int tileSize) {
+        return compactBits(tileKeys[tile]) - (MAX_CELL >> tileShift);
+    }
+
+    @Override
+    public int tileY(int tile, int tileSize) {
+        return compactBits(tileKeys[tile] >>> 1) - (MAX_CELL >> tileShift);
+    }
+
+    @Override
+    public void forEachInTile(int tile, int tileSize, IntConsumer body) {
+        for (int k = tileStart[tile]; k < tileStart[tile + 1]; k++) {
+            body.accept(sortedIndices[k]);
+        }
+    }
+}
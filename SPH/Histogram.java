@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+// Istogramma delle durate in nanosecondi con bucket logaritmici: ogni potenza di due é divisa in
+// SUB_BUCKETS intervalli uguali, quindi i percentili hanno un errore relativo massimo di
+// 1 / SUB_BUCKETS con una memoria fissa (poche centinaia di long) e una registrazione in tempo
+// costante. Una registrazione costa un lock non conteso, trascurabile rispetto a una fase
+class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+
+    // Metodo per registrare una durata
+    public synchronized void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        count++;
+        total += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    // Metodo per copiare lo stato corrente in un altro istogramma e azzerare questo,
+    // usato dall'export periodico per ottenere le statistiche dell'ultimo intervallo
+    public synchronized void drainTo(Histogram target) {
+        System.arraycopy(counts, 0, target.counts, 0, BUCKETS);
+        target.count = count;
+        target.total = total;
+        target.max = max;
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    // Metodo per stimare il percentile p (tra 0 e 1) come limite superiore del bucket che lo contiene
+    public synchronized long percentile(double p) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(b));
+            }
+        }
+        return max;
+    }
+
+    // I valori sotto SUB_BUCKETS hanno un bucket ciascuno, gli altri vengono divisi in base al bit
+    // piú significativo e ai SUB_BITS bit successivi
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+        return (exponent + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << exponent) - 1;
+    }
+}
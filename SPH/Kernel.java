@@ -0,0 +1,61 @@
+// Funzione kernel di smoothing con supporto di raggio smoothRadius.
+// Ogni implementazione precalcola nel costruttore le potenze del raggio e le costanti
+// di normalizzazione, cosí le chiamate nel loop dei neighbor non usano Math.pow
+abstract class Kernel {
+    public final double smoothRadius;
+    protected final double squaredSmoothRadius;
+
+    // Costruttore
+    protected Kernel(double smoothRadius) {
+        this.smoothRadius = smoothRadius;
+        this.squaredSmoothRadius = smoothRadius * smoothRadius;
+    }
+
+    // Valore del kernel alla distanza dist
+    public abstract double value(double dist);
+
+    // Derivata del kernel rispetto alla distanza
+    public abstract double gradient(double dist);
+
+    // Valore del kernel a partire dalla distanza al quadrato, i kernel che dipendono solo
+    // da dist^2 (o le tabelle) lo ridefiniscono evitando la radice quadrata
+    public double valueSquared(double distSquared) {
+        return value(Math.sqrt(distSquared));
+    }
+
+    // Derivata del kernel a partire dalla distanza al quadrato
+    public double gradientSquared(double distSquared) {
+        return gradient(Math.sqrt(distSquared));
+    }
+
+    // Valore del kernel con raggio h invece di smoothRadius, usato con la risoluzione adattiva.
+    // I kernel in 2D hanno la forma W_h(r) = f(r / h) / h^2, quindi basta riscalare la distanza
+    // e il valore del kernel con raggio smoothRadius: W_h(r) = (s / h)^2 W_s(r s / h)
+    public double valueAt(double distSquared, double h) {
+        double ratio = smoothRadius / h;
+        double ratioSquared = ratio * ratio;
+        return ratioSquared * valueSquared(distSquared * ratioSquared);
+    }
+
+    // Derivata del kernel con raggio h, dW_h/dr (r) = (s / h)^3 W_s'(r s / h)
+    public double gradientAt(double dist, double h) {
+        double ratio = smoothRadius / h;
+        return ratio * ratio * ratio * gradient(dist * ratio);
+    }
+
+    // Metodo per creare un kernel a partire dal nome usato da riga di comando
+    public static Kernel create(String name, double smoothRadius) {
+        switch (name) {
+            case "spiky":
+                return new SpikyKernel(smoothRadius);
+            case "poly6":
+                return new Poly6Kernel(smoothRadius);
+            case "cubic":
+                return new CubicSplineKernel(smoothRadius);
+            case "wendland":
+                return new WendlandKernel(smoothRadius);
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + name);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Registro delle metriche della simulazione: un istogramma delle durate per ogni fase del substep,
+// per il frame intero e per il rendering, piú alcuni contatori (come il numero medio di neighbor per
+// particella). La raccolta si attiva e si disattiva a runtime con setEnabled, senza ricompilare:
+// da disattivata ogni fase costa solo la lettura di un volatile. Le fasi e i frame vengono inoltre
+// emessi come eventi JFR (PhaseEvent, FrameEvent) quando una registrazione JFR é attiva,
+// indipendentemente dal registro
+final class Metrics {
+    private static volatile boolean enabled = false;
+    private static final Map<String, Histogram> timers = new LinkedHashMap<>();
+    private static final Map<String, Counter> counters = new LinkedHashMap<>();
+    private static final Histogram[] phaseTimers = new Histogram[Phase.values().length];
+
+    public static final Histogram FRAME;
+    public static final Histogram RENDER;
+    public static final Counter NEIGHBORS;
+    public static final Counter SUBSTEPS;
+    public static final Counter ACTIVE;
+
+    static {
+        for (Phase phase : Phase.values()) {
+            phaseTimers[phase.ordinal()] = timer(phase.label);
+        }
+        FRAME = timer("Frame");
+        RENDER = timer("Render");
+        NEIGHBORS = counter("Neighbors/Particle");
+        SUBSTEPS = counter("Substeps/Frame");
+        ACTIVE = counter("Active Fraction");
+    }
+
+    private Metrics() {
+    }
+
+    // Contatore di valori campionati: numero di campioni, media, ultimo valore e massimo
+    static final class Counter {
+        private long count = 0;
+        private double total = 0;
+        private double last = 0;
+        private double max = 0;
+
+        public synchronized void record(double value) {
+            count++;
+            total += value;
+            last = value;
+            if (count == 1 || value > max) max = value;
+        }
+
+        // Metodo per copiare lo stato in un altro contatore e azzerare questo
+        public synchronized void drainTo(Counter target) {
+            target.count = count;
+            target.total = total;
+            target.last = last;
+            target.max = max;
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        public synchronized double getLast() {
+            return last;
+        }
+
+        public synchronized double getMax() {
+            return max;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Metodo per attivare o disattivare la raccolta, chiamabile da qualsiasi thread
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    // Metodo per ottenere (creandolo se serve) l'istogramma con il nome dato
+    public static synchronized Histogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    // Metodo per ottenere (creandolo se serve) il contatore con il nome dato
+    public static synchronized Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    // Nomi degli istogrammi e dei contatori registrati, nell'ordine di registrazione
+    public static synchronized List<String> timerNames() {
+        return new ArrayList<>(timers.keySet());
+    }
+
+    public static synchronized List<String> counterNames() {
+        return new ArrayList<>(counters.keySet());
+    }
+
+    // Metodo per registrare la durata di una fase del substep
+    public static void recordPhase(Phase phase, long nanos, int particles) {
+        if (enabled) {
+            phaseTimers[phase.ordinal()].record(nanos);
+        }
+        PhaseEvent event = new PhaseEvent();
+        if (event.shouldCommit()) {
+            event.phase = phase.label;
+            event.nanos = nanos;
+            event.particles = particles;
+            event.commit();
+        }
+    }
+
+    // Metodo per registrare la durata di un frame completo (tutti i substep e la sincronizzazione)
+    public static void recordFrame(long frame, long nanos, int particles) {
+        if (enabled) {
+            FRAME.record(nanos);
+        }
+        FrameEvent event = new FrameEvent();
+        if (event.shouldCommit()) {
+            event.frame = frame;
+            event.nanos = nanos;
+            event.particles = particles;
+            event.averageNeighbors = NEIGHBORS.getLast();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Esportazione periodica del registro delle metriche: ogni interval frame le statistiche raccolte
+// dall'ultimo export (numero di campioni, media, p50, p99 e massimo in microsecondi) vengono scritte
+// e gli istogrammi azzerati. Il formato dipende dall'estensione del file: ".json" scrive un oggetto
+// JSON per riga, qualsiasi altra estensione una riga CSV per metrica. Senza file il riepilogo viene
+// stampato su stdout. Quando le metriche sono disattivate non viene scritto nulla
+class MetricsExporter {
+    private final Path path;
+    private final int interval;
+    private final boolean json;
+    private BufferedWriter writer = null;
+    private long lastFrame = 0;
+    private final Histogram histogram = new Histogram();
+    private final Metrics.Counter counter = new Metrics.Counter();
+
+    // Costruttore, path puó essere null per stampare su stdout
+    public MetricsExporter(Path path, int interval) {
+        this.path = path;
+        this.interval = Math.max(1, interval);
+        this.json = path != null && path.toString().toLowerCase(Locale.ROOT).endsWith(".json");
+    }
+
+    // Metodo da chiamare alla fine di ogni frame dal thread di simulazione
+    public void onFrame(long frame) {
+        lastFrame = frame;
+        if (frame % interval != 0 || !Metrics.isEnabled()) return;
+        export(frame);
+    }
+
+    // Metodo per esportare le statistiche rimaste e chiudere il file
+    public void close() {
+        if (Metrics.isEnabled() && Metrics.FRAME.getCount() > 0) {
+            export(lastFrame);
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Metrics export failed: " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private void export(long frame) {
+        StringBuilder out = new StringBuilder();
+        if (path == null) {
+            formatTable(frame, out);
+            System.out.print(out);
+            return;
+        }
+        if (json) {
+            formatJson(frame, out);
+        } else {
+            formatCsv(frame, out);
+        }
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+                if (!json) {
+                    writer.write("frame,metric,count,mean,p50,p99,max\n");
+                }
+            }
+            writer.write(out.toString());
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Metrics export failed: " + e.getMessage());
+        }
+    }
+
+    private void formatCsv(long frame, StringBuilder out) {
+        for (String name : Metrics.timerNames()) {
+            Metrics.timer(name).drainTo(histogram);
+            if (histogram.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "%d,%s,%d,%.3f,%.3f,%.3f,%.3f%n", frame, name, histogram.getCount(),
+                micros(histogram.getMean()), micros(histogram.percentile(0.5)), micros(histogram.percentile(0.99)), micros(histogram.getMax())));
+        }
+        for (String name : Metrics.counterNames()) {
+            Metrics.counter(name).drainTo(counter);
+            if (counter.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "%d,%s,%d,%.3f,,,%.3f%n", frame, name, counter.getCount(), counter.getMean(), counter.getMax()));
+        }
+    }
+
+    private void formatJson(long frame, StringBuilder out) {
+        out.append("{\"frame\":").append(frame).append(",\"timers\":{");
+        boolean first = true;
+        for (String name : Metrics.timerNames()) {
+            Metrics.timer(name).drainTo(histogram);
+            if (histogram.getCount() == 0) continue;
+            if (!first) out.append(',');
+            first = false;
+            out.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"mean_us\":%.3f,\"p50_us\":%.3f,\"p99_us\":%.3f,\"max_us\":%.3f}", name, histogram.getCount(),
+                micros(histogram.getMean()), micros(histogram.percentile(0.5)), micros(histogram.percentile(0.99)), micros(histogram.getMax())));
+        }
+        out.append("},\"counters\":{");
+        first = true;
+        for (String name : Metrics.counterNames()) {
+            Metrics.counter(name).drainTo(counter);
+            if (counter.getCount() == 0) continue;
+            if (!first) out.append(',');
+            first = false;
+            out.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"mean\":%.3f,\"max\":%.3f}", name, counter.getCount(), counter.getMean(), counter.getMax()));
+        }
+        out.append("}}\n");
+    }
+
+    private void formatTable(long frame, StringBuilder out) {
+        out.append(String.format(Locale.ROOT, "---- Metrics at frame %d ----%n", frame));
+        out.append(String.format(Locale.ROOT, "    %-24s%8s%12s%12s%12s%12s%n", "Timer (us)", "count", "mean", "p50", "p99", "max"));
+        for (String name : Metrics.timerNames()) {
+            Metrics.timer(name).drainTo(histogram);
+            if (histogram.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "    %-24s%8d%12.1f%12.1f%12.1f%12.1f%n", name, histogram.getCount(),
+                micros(histogram.getMean()), micros(histogram.percentile(0.5)), micros(histogram.percentile(0.99)), micros(histogram.getMax())));
+        }
+        for (String name : Metrics.counterNames()) {
+            Metrics.counter(name).drainTo(counter);
+            if (counter.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "    %-24s%8d%12.1f%24s%12.1f%n", name, counter.getCount(), counter.getMean(), "", counter.getMax()));
+        }
+    }
+
+    private static double micros(double nanos) {
+        return nanos / 1_000.0;
+    }
+}
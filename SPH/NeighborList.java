@@ -0,0 +1,269 @@
+// Lista dei neighbor di tipo Verlet: per ogni particella vengono salvati gli indici delle particelle
+// entro smoothRadius + skin in un unico int[] (offsets[i]..offsets[i + 1]).
+// La lista é condivisa dal calcolo della densitá e delle forze e viene ricostruita solo quando
+// una particella si é spostata di piú di metá dello skin dall'ultima costruzione,
+// perché fino ad allora nessuna coppia entro smoothRadius puó mancare.
+// In modalitá half ogni coppia non ordinata viene salvata una sola volta, nella lista della
+// particella con indice minore, e la particella stessa non compare nella propria lista.
+// Con smoothing radius per particella (ParticleStore.smoothRadii) la coppia (i, j) usa il raggio
+// medio (h_i + h_j) / 2 + skin, e ogni particella cerca nelle celle entro (h_i + h_max) / 2 + skin,
+// quindi anche oltre il quadrato 3 x 3 se ci sono particelle con raggio maggiore di quello delle celle
+class NeighborList {
+    private final double skin;
+    private final boolean half;
+    private int[] offsets = new int[1];
+    private int[] indices = new int[0];
+    private double[] referenceX = new double[0];
+    private double[] referenceY = new double[0];
+    // posizioni di riferimento delle particelle in singola precisione, usate al posto delle
+    // precedenti cosí anche la lista dei neighbor di FloatFluid occupa metá memoria
+    private float[] floatReferenceX = new float[0];
+    private float[] floatReferenceY = new float[0];
+    private int builtCount = 0;
+    private boolean valid = false;
+
+    // Costruttori
+    public NeighborList(double skin) {
+        this(skin, false);
+    }
+
+    public NeighborList(double skin, boolean half) {
+        this.skin = skin;
+        this.half = half;
+    }
+
+    public double getSkin() {
+        return skin;
+    }
+
+    public boolean isHalf() {
+        return half;
+    }
+
+    // Metodo per forzare la ricostruzione al prossimo step
+    public void invalidate() {
+        valid = false;
+    }
+
+    // Metodo per verificare se la lista va ricostruita, ovvero se almeno una particella si é spostata
+    // di piú di skin / 2 rispetto alla posizione salvata all'ultima costruzione
+    public boolean needsRebuild(ParticleStore store, TileScheduler scheduler) {
+        if (!isValid(store)) return true;
+        final double maxDisplacementSquared = skin * skin / 4.0;
+        return scheduler.anyMatch(0, store.count, i -> displacementSquared(store, i) > maxDisplacementSquared);
+    }
+
+    // Metodo per verificare se la lista é stata costruita e non é stata invalidata,
+    // senza controllare lo spostamento delle particelle
+    public boolean isValid(ParticleStore store) {
+        return valid && builtCount == store.count;
+    }
+
+    public boolean isValid(FloatParticleStore store) {
+        return valid && builtCount == store.count;
+    }
+
+    // Metodo analogo per uno store che conterrá count particelle, usato dalla simulazione distribuita
+    // prima dello scambio con i vicini, quando lo store contiene solo le particelle possedute
+    public boolean isValid(int count) {
+        return valid && builtCount == count;
+    }
+
+    // Quadrato dello spostamento della particella i dall'ultima costruzione
+    public double displacementSquared(ParticleStore store, int i) {
+        double dx = store.positionX[i] - referenceX[i];
+        double dy = store.positionY[i] - referenceY[i];
+        return dx * dx + dy * dy;
+    }
+
+    public double displacementSquared(FloatParticleStore store, int i) {
+        float dx = store.positionX[i] - floatReferenceX[i];
+        float dy = store.positionY[i] - floatReferenceY[i];
+        return dx * dx + dy * dy;
+    }
+
+    // Metodo per invalidare la lista a partire dallo spostamento massimo misurato altrove,
+    // usato quando il controllo é fuso con l'integrazione delle posizioni
+    public void checkDisplacement(double maxDisplacementSquared) {
+        if (maxDisplacementSquared > skin * skin / 4.0) {
+            valid = false;
+        }
+    }
+
+    // Metodo per costruire la lista a partire dalla griglia delle celle.
+    // Il primo passaggio conta i neighbor di ciascuna particella, la prefix sum dei conteggi
+    // fornisce gli offset, e il secondo passaggio scrive gli indici nella posizione finale
+    public void build(ParticleStore store, SpatialGrid grid, TileScheduler scheduler) {
+        int count = store.count;
+        if (offsets.length < count + 1) {
+            offsets = new int[count + count / 8 + 1];
+        }
+        if (referenceX.length < count) {
+            referenceX = new double[count + count / 8];
+            referenceY = new double[count + count / 8];
+        }
+        final int[] offsets = this.offsets;
+        final double cutoff = store.smoothRadius + skin;
+        final double cutoffSquared = cutoff * cutoff;
+        final int reach = (int) Math.ceil(cutoff / grid.getCellSize());
+
+        scheduler.forEachParticle(grid, i -> {
+            offsets[i + 1] = scan(store, grid, i, reach, cutoffSquared, skin, half, null, 0);
+        });
+        offsets[0] = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        if (indices.length < offsets[count]) {
+            indices = new int[offsets[count] + offsets[count] / 8];
+        }
+        final int[] indices = this.indices;
+        scheduler.forEachParticle(grid, i -> {
+            scan(store, grid, i, reach, cutoffSquared, skin, half, indices, offsets[i]);
+            referenceX[i] = store.positionX[i];
+            referenceY[i] = store.positionY[i];
+        });
+        builtCount = count;
+        valid = true;
+        Metrics.NEIGHBORS.record(averageNeighbors());
+    }
+
+    // Metodo analogo per le particelle in singola precisione, le distanze vengono confrontate in float
+    public void build(FloatParticleStore store, SpatialGrid grid, TileScheduler scheduler) {
+        int count = store.count;
+        if (offsets.length < count + 1) {
+            offsets = new int[count + count / 8 + 1];
+        }
+        if (floatReferenceX.length < count) {
+            floatReferenceX = new float[count + count / 8];
+            floatReferenceY = new float[count + count / 8];
+        }
+        final int[] offsets = this.offsets;
+        final double cutoff = store.smoothRadius + skin;
+        final float cutoffSquared = (float) (cutoff * cutoff);
+        final int reach = (int) Math.ceil(cutoff / grid.getCellSize());
+
+        scheduler.forEachParticle(grid, i -> {
+            offsets[i + 1] = scan(store, grid, i, reach, cutoffSquared, half, null, 0);
+        });
+        offsets[0] = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        if (indices.length < offsets[count]) {
+            indices = new int[offsets[count] + offsets[count] / 8];
+        }
+        final int[] indices = this.indices;
+        scheduler.forEachParticle(grid, i -> {
+            scan(store, grid, i, reach, cutoffSquared, half, indices, offsets[i]);
+            floatReferenceX[i] = store.positionX[i];
+            floatReferenceY[i] = store.positionY[i];
+        });
+        builtCount = count;
+        valid = true;
+        Metrics.NEIGHBORS.record(averageNeighbors());
+    }
+
+    // Metodo di supporto che scorre le celle entro reach dalla cella della particella i e conta
+    // (o scrive in out a partire da position, se out non é null) le particelle entro il cutoff.
+    // Se half é vero vengono considerate solo le particelle con indice maggiore di i.
+    // Con raggi per particella reach e cutoff vengono ricavati dai raggi invece che dai parametri
+    private static int scan(ParticleStore store, SpatialGrid grid, int i, int reach, double cutoffSquared, double skin, boolean half, int[] out, int position) {
+        int[] sortedIndices = grid.sortedIndices();
+        double[] radii = store.smoothRadii;
+        double xi = store.positionX[i];
+        double yi = store.positionY[i];
+        int cellX = grid.cellX(xi);
+        int cellY = grid.cellY(yi);
+        int fromX = cellX - reach;
+        int toX = cellX + reach;
+        int fromY = cellY - reach;
+        int toY = cellY + reach;
+        double halfRadius = 0;
+        if (radii != null) {
+            // il cutoff piú grande della particella puó superare il lato delle celle: si visitano
+            // solo le celle che intersecano il quadrato di lato 2 * cutoff attorno alla particella
+            double cutoff = 0.5 * (radii[i] + store.maxSmoothRadius) + skin;
+            fromX = grid.cellX(xi - cutoff);
+            toX = grid.cellX(xi + cutoff);
+            fromY = grid.cellY(yi - cutoff);
+            toY = grid.cellY(yi + cutoff);
+            halfRadius = 0.5 * radii[i] + skin;
+        }
+        int found = 0;
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                int cell = grid.getCellIndex(x, y);
+                if (cell < 0) continue;
+                int start = grid.cellStart(cell);
+                int end = start + grid.cellCount(cell);
+                for (int k = start; k < end; k++) {
+                    int j = sortedIndices[k];
+                    if (half && j <= i) continue;
+                    double rx = store.positionX[j] - xi;
+                    double ry = store.positionY[j] - yi;
+                    if (radii != null) {
+                        double pairCutoff = halfRadius + 0.5 * radii[j];
+                        cutoffSquared = pairCutoff * pairCutoff;
+                    }
+                    if (rx * rx + ry * ry > cutoffSquared) continue;
+                    if (out != null) out[position + found] = j;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static int scan(FloatParticleStore store, SpatialGrid grid, int i, int reach, float cutoffSquared, boolean half, int[] out, int position) {
+        int[] sortedIndices = grid.sortedIndices();
+        float xi = store.positionX[i];
+        float yi = store.positionY[i];
+        int cellX = grid.cellX(xi);
+        int cellY = grid.cellY(yi);
+        int found = 0;
+        for (int dy = -reach; dy <= reach; dy++) {
+            for (int dx = -reach; dx <= reach; dx++) {
+                int cell = grid.getCellIndex(cellX + dx, cellY + dy);
+                if (cell < 0) continue;
+                int start = grid.cellStart(cell);
+                int end = start + grid.cellCount(cell);
+                for (int k = start; k < end; k++) {
+                    int j = sortedIndices[k];
+                    if (half && j <= i) continue;
+                    float rx = store.positionX[j] - xi;
+                    float ry = store.positionY[j] - yi;
+                    if (rx * rx + ry * ry > cutoffSquared) continue;
+                    if (out != null) out[position + found] = j;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    // Indice in indices() del primo neighbor della particella i
+    public int start(int i) {
+        return offsets[i];
+    }
+
+    // Indice in indices() successivo all'ultimo neighbor della particella i
+    public int end(int i) {
+        return offsets[i + 1];
+    }
+
+    // Numero medio di neighbor candidati per particella nell'ultima costruzione, in modalitá half
+    // ogni coppia viene contata per entrambe le particelle
+    public double averageNeighbors() {
+        if (builtCount == 0) return 0;
+        double entries = offsets[builtCount];
+        return half ? 2 * entries / builtCount : entries / builtCount;
+    }
+
+    // Vettore degli indici dei neighbor di tutte le particelle
+    public int[] indices() {
+        return indices;
+    }
+}
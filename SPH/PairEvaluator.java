@@ -0,0 +1,29 @@
+// Valutazione dei contributi dei neighbor di una particella, alternativa ai loop scalari di Fluid.
+// L'unica implementazione é VectorPairEvaluator (cartella vector/), che usa il modulo incubator
+// jdk.incubator.vector e viene caricata via reflection: se la classe non é stata compilata o il
+// modulo non é abilitato (--add-modules jdk.incubator.vector) Fluid resta sul percorso scalare
+interface PairEvaluator {
+    // Densitá della particella i, somma sui neighbor in indices()[start, end)
+    double density(ParticleStore store, int[] neighbors, int start, int end, int i);
+
+    // Metodo per applicare alla particella i le forze di viscositá e di pressione dei neighbor
+    // in indices()[start, end), nello stesso ordine di Fluid.applyMergedForcesParallel
+    void applyForces(ParticleStore store, int[] neighbors, int start, int end, int i, double viscosityConstant);
+
+    // Metodo per creare il valutatore vettoriale, supportato solo per la coppia di kernel di default
+    // (spiky per densitá e pressione, poly6 per la viscositá). Ritorna null se non é disponibile
+    static PairEvaluator createVector(Kernel pressureKernel, Kernel viscosityKernel) {
+        if (!(pressureKernel instanceof SpikyKernel) || !(viscosityKernel instanceof Poly6Kernel)) {
+            System.err.println("Vector kernels support only the spiky/poly6 pair, using the scalar path");
+            return null;
+        }
+        try {
+            return (PairEvaluator) Class.forName("VectorPairEvaluator")
+                .getConstructor(SpikyKernel.class, Poly6Kernel.class)
+                .newInstance(pressureKernel, viscosityKernel);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Vector API not available (" + e + "), using the scalar path");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// Pool delle particelle per emettitori e pozzi: lo store viene preallocato per capacity particelle
+// e gli id liberi sono tenuti in una free list (uno stack di int), cosí a regime aggiungere e
+// togliere particelle non alloca memoria. Una particella rimossa viene sostituita dall'ultima
+// dello store (swap-remove), quindi gli array restano densi in [0, count) e i loop non devono
+// saltare posizioni vuote. Il suo id torna nella free list e viene riusato dalla prossima aggiunta
+class ParticlePool {
+    private final int capacity;
+    private final int[] freeIds;
+    private int freeCount;
+    private long spawned = 0;
+    private long removed = 0;
+    private long rejected = 0;
+
+    // Costruttore, le particelle giá presenti nello store occupano gli id da 0 a store.count - 1
+    public ParticlePool(ParticleStore store, int capacity) {
+        if (capacity < store.count) {
+            throw new IllegalArgumentException("Pool capacity " + capacity + " is smaller than the " + store.count + " initial particles");
+        }
+        this.capacity = capacity;
+        this.freeIds = new int[capacity];
+        // gli id piú bassi vengono estratti per primi
+        for (int id = capacity - 1; id >= store.count; id--) {
+            freeIds[freeCount++] = id;
+        }
+        store.ensureCapacity(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    // Numero totale di particelle aggiunte
+    public long getSpawned() {
+        return spawned;
+    }
+
+    // Numero totale di particelle rimosse
+    public long getRemoved() {
+        return removed;
+    }
+
+    // Numero di aggiunte scartate perché il pool era pieno
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Metodo per aggiungere una particella in fondo allo store, ritorna il suo indice
+    // o -1 se il pool é pieno
+    public int spawn(ParticleStore store, double mass, double x, double y, double vx, double vy) {
+        if (freeCount == 0) {
+            rejected++;
+            return -1;
+        }
+        spawned++;
+        return store.add(mass, x, y, vx, vy, freeIds[--freeCount]);
+    }
+
+    // Metodo per rimuovere la particella i, la cui posizione viene occupata dall'ultima particella dello store
+    public void remove(ParticleStore store, int i) {
+        freeIds[freeCount++] = store.id[i];
+        removed++;
+        store.remove(i);
+    }
+}
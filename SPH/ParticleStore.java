@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Contenitore dello stato delle particelle in formato structure-of-arrays: ogni grandezza
+// é salvata in un array primitivo contiguo, cosí i loop sui neighbor leggono memoria
+// sequenziale invece di inseguire i riferimenti Particle -> Vector2D.
+// Il numero di particelle puó cambiare durante la simulazione (migrazione tra i processi della
+// simulazione distribuita, emettitori e pozzi): gli array hanno una capacitá che cresce solo quando
+// serve, e sono validi solo gli indici in [0, count)
+class ParticleStore {
+    public int count;
+    public final double smoothRadius;
+    public final int radius;
+    public final double dampingFactor;
+    public double[] mass;
+    public double[] positionX;
+    public double[] positionY;
+    public double[] velocityX;
+    public double[] velocityY;
+    public double[] accelerationX;
+    public double[] accelerationY;
+    public double[] density;
+    public double[] pressure;
+    public int[] cellX;
+    public int[] cellY;
+    // indice originale di ciascuna particella, che segue le particelle nei riordini
+    public int[] id;
+    // substep consecutivi in cui la particella é rimasta ferma, usato da ActivityTracker
+    public int[] quietSteps;
+    // smoothing radius di ciascuna particella, allocato solo con la risoluzione adattiva (altrimenti
+    // null e tutte le particelle usano smoothRadius); maxSmoothRadius é il massimo tra le particelle
+    public double[] smoothRadii = null;
+    public double maxSmoothRadius;
+    private double[] scratchDouble = new double[0];
+    private int[] scratchInt = new int[0];
+
+    // Costruttore, copia lo stato iniziale dalla lista di particelle.
+    // Raggio, smoothing radius e damping sono comuni a tutte le particelle e vengono presi dalla prima
+    public ParticleStore(ArrayList<Particle> particles) {
+        this.count = particles.size();
+        Particle first = particles.get(0);
+        this.smoothRadius = first.smoothRadius;
+        this.radius = first.radius;
+        this.dampingFactor = first.dampingFactor;
+        this.maxSmoothRadius = smoothRadius;
+        this.mass = new double[count];
+        this.positionX = new double[count];
+        this.positionY = new double[count];
+        this.velocityX = new double[count];
+        this.velocityY = new double[count];
+        this.accelerationX = new double[count];
+        this.accelerationY = new double[count];
+        this.density = new double[count];
+        this.pressure = new double[count];
+        this.cellX = new int[count];
+        this.cellY = new int[count];
+        this.id = new int[count];
+        this.quietSteps = new int[count];
+        for (int i = 0; i < count; i++) {
+            Particle p = particles.get(i);
+            mass[i] = p.mass;
+            positionX[i] = p.position.x;
+            positionY[i] = p.position.y;
+            velocityX[i] = p.velocity.x;
+            velocityY[i] = p.velocity.y;
+            accelerationX[i] = p.acceleration.x;
+            accelerationY[i] = p.acceleration.y;
+            density[i] = p.density;
+            pressure[i] = p.pressure;
+            updateCell(i);
+            id[i] = i;
+        }
+    }
+
+    // Metodo per garantire spazio per almeno capacity particelle, gli array crescono di almeno metá
+    // della capacitá attuale cosí aggiunte successive non riallocano a ogni chiamata
+    public void ensureCapacity(int capacity) {
+        if (mass.length >= capacity) return;
+        int newCapacity = Math.max(capacity, mass.length + mass.length / 2);
+        mass = Arrays.copyOf(mass, newCapacity);
+        positionX = Arrays.copyOf(positionX, newCapacity);
+        positionY = Arrays.copyOf(positionY, newCapacity);
+        velocityX = Arrays.copyOf(velocityX, newCapacity);
+        velocityY = Arrays.copyOf(velocityY, newCapacity);
+        accelerationX = Arrays.copyOf(accelerationX, newCapacity);
+        accelerationY = Arrays.copyOf(accelerationY, newCapacity);
+        density = Arrays.copyOf(density, newCapacity);
+        pressure = Arrays.copyOf(pressure, newCapacity);
+        cellX = Arrays.copyOf(cellX, newCapacity);
+        cellY = Arrays.copyOf(cellY, newCapacity);
+        id = Arrays.copyOf(id, newCapacity);
+        quietSteps = Arrays.copyOf(quietSteps, newCapacity);
+        if (smoothRadii != null) {
+            smoothRadii = Arrays.copyOf(smoothRadii, newCapacity);
+        }
+    }
+
+    // Metodo per passare a uno smoothing radius per particella, inizialmente smoothRadius per tutte
+    public void enableVariableRadius() {
+        if (smoothRadii != null) return;
+        smoothRadii = new double[mass.length];
+        Arrays.fill(smoothRadii, smoothRadius);
+    }
+
+    // Metodo per aggiungere una particella in fondo allo store, ritorna il suo indice
+    public int add(double particleMass, double x, double y, double vx, double vy, int particleId) {
+        ensureCapacity(count + 1);
+        int i = count++;
+        mass[i] = particleMass;
+        positionX[i] = x;
+        positionY[i] = y;
+        velocityX[i] = vx;
+        velocityY[i] = vy;
+        accelerationX[i] = 0;
+        accelerationY[i] = 0;
+        density[i] = 0;
+        pressure[i] = 0;
+        id[i] = particleId;
+        quietSteps[i] = 0;
+        if (smoothRadii != null) {
+            smoothRadii[i] = smoothRadius;
+        }
+        updateCell(i);
+        return i;
+    }
+
+    // Metodo per copiare lo stato della particella from nella posizione to
+    public void copy(int from, int to) {
+        mass[to] = mass[from];
+        positionX[to] = positionX[from];
+        positionY[to] = positionY[from];
+        velocityX[to] = velocityX[from];
+        velocityY[to] = velocityY[from];
+        accelerationX[to] = accelerationX[from];
+        accelerationY[to] = accelerationY[from];
+        density[to] = density[from];
+        pressure[to] = pressure[from];
+        cellX[to] = cellX[from];
+        cellY[to] = cellY[from];
+        id[to] = id[from];
+        quietSteps[to] = quietSteps[from];
+        if (smoothRadii != null) {
+            smoothRadii[to] = smoothRadii[from];
+        }
+    }
+
+    // Metodo per rimuovere la particella i sostituendola con l'ultima (swap-remove): gli array restano
+    // densi, ma l'ordine delle particelle cambia e gli indici salvati altrove vanno ricostruiti
+    public void remove(int i) {
+        count--;
+        if (i != count) copy(count, i);
+    }
+
+    // Metodo per applicare una forza alla particella i
+    public void applyForce(int i, double forceX, double forceY) {
+        accelerationX[i] += forceX / mass[i];
+        accelerationY[i] += forceY / mass[i];
+    }
+
+    // Metodo per gestire le collisioni al bordo della finestra, stesso modello a molla
+    // smorzata di Particle.boundaryForce
+    private void boundaryForce(int i, int windowWidth, int windowHeight) {
+        double boundaryStiffness = 100.0;
+        double boundaryDamping = 50.0;
+
+        if (positionX[i] < radius) {
+            double penetration = radius - positionX[i];
+            applyForce(i, boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityX[i], 0);
+        } else if (positionX[i] > windowWidth - radius) {
+            double penetration = positionX[i] - (windowWidth - radius);
+            applyForce(i, -boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityX[i], 0);
+        }
+
+        if (positionY[i] < radius) {
+            double penetration = radius - positionY[i];
+            applyForce(i, 0, boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityY[i]);
+        } else if (positionY[i] > windowHeight - radius) {
+            double penetration = positionY[i] - (windowHeight - radius);
+            applyForce(i, 0, -boundaryStiffness * penetration * mass[i] - boundaryDamping * velocityY[i]);
+        }
+    }
+
+    // Metodo per aggiornare gli indici della cella di lato smoothRadius della particella i, usati come
+    // chiave del riordino. Le coordinate non vengono limitate al box: le particelle fuori dalla finestra
+    // restano nelle proprie celle come nella griglia sparsa, invece di finire su quelle di bordo
+    // (CellGrid limita per conto suo le celle al box, cellMortonIndex a [-2^30, 2^30))
+    public void updateCell(int i) {
+        cellX[i] = (int) Math.floor(positionX[i] / smoothRadius);
+        cellY[i] = (int) Math.floor(positionY[i] / smoothRadius);
+    }
+
+    // Metodo per aggiornare posizione e velocitá della particella i integrando l'accelerazione,
+    // equivalente a Particle.update. Ritorna il quadrato dell'accelerazione integrata (forze del
+    // bordo comprese), usato dal passo temporale adattivo
+    public double update(int i, int windowWidth, int windowHeight, double dt) {
+        boundaryForce(i, windowWidth, windowHeight);
+        double accelerationSquared = accelerationX[i] * accelerationX[i] + accelerationY[i] * accelerationY[i];
+        positionX[i] += velocityX[i] * dt + 0.5 * accelerationX[i] * dt * dt;
+        positionY[i] += velocityY[i] * dt + 0.5 * accelerationY[i] * dt * dt;
+        velocityX[i] += accelerationX[i] * dt;
+        velocityY[i] += accelerationY[i] * dt;
+
+        velocityX[i] *= dampingFactor;
+        velocityY[i] *= dampingFactor;
+        accelerationX[i] = 0;
+        accelerationY[i] = 0;
+        updateCell(i);
+        return accelerationSquared;
+    }
+
+    // Metodo per ricopiare lo stato della particella i nell'oggetto Particle corrispondente,
+    // usato per mantenere aggiornata la vista a oggetti usata dal rendering
+    public void copyTo(int i, Particle p) {
+        p.position.x = positionX[i];
+        p.position.y = positionY[i];
+        p.velocity.x = velocityX[i];
+        p.velocity.y = velocityY[i];
+        p.density = density[i];
+        p.pressure = pressure[i];
+    }
+
+    // Metodo per riordinare le particelle in memoria: dopo la chiamata la particella in posizione k
+    // é quella che si trovava in posizione order[k]. Tutti gli indici salvati altrove
+    // (griglia, lista dei neighbor) diventano invalidi e vanno ricostruiti
+    public void permute(int[] order, TileScheduler scheduler) {
+        if (scratchDouble.length < count) {
+            scratchDouble = new double[count];
+            scratchInt = new int[count];
+        }
+        permute(order, mass, scheduler);
+        permute(order, positionX, scheduler);
+        permute(order, positionY, scheduler);
+        permute(order, velocityX, scheduler);
+        permute(order, velocityY, scheduler);
+        permute(order, accelerationX, scheduler);
+        permute(order, accelerationY, scheduler);
+        permute(order, density, scheduler);
+        permute(order, pressure, scheduler);
+        permute(order, cellX, scheduler);
+        permute(order, cellY, scheduler);
+        permute(order, id, scheduler);
+        permute(order, quietSteps, scheduler);
+        if (smoothRadii != null) {
+            permute(order, smoothRadii, scheduler);
+        }
+    }
+
+    private void permute(int[] order, double[] values, TileScheduler scheduler) {
+        final double[] scratch = scratchDouble;
+        scheduler.forRange(0, count, k -> scratch[k] = values[order[k]]);
+        System.arraycopy(scratch, 0, values, 0, count);
+    }
+
+    private void permute(int[] order, int[] values, TileScheduler scheduler) {
+        final int[] scratch = scratchInt;
+        scheduler.forRange(0, count, k -> scratch[k] = values[order[k]]);
+        System.arraycopy(scratch, 0, values, 0, count);
+    }
+}
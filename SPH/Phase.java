@@ -0,0 +1,20 @@
+// Fasi di un substep di simulazione, usate per accumulare i tempi di esecuzione di ciascuna
+enum Phase {
+    REORDER("Reorder"),
+    SOURCES("Emitters & Sinks"),
+    HALO("Halo Exchange"),
+    NEIGHBORS("Neighbor List"),
+    DENSITY("Density Calc"),
+    PRESSURE("Pressure Calc"),
+    FORCES("Merged Forces"),
+    GRAVITY("Gravity Force"),
+    INTEGRATION("Particles Update"),
+    RESOLUTION("Adaptive Resolution"),
+    SYNC("Particles Sync");
+
+    public final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+}
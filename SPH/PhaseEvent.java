@@ -0,0 +1,24 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Evento JFR emesso alla fine di ogni fase di un substep, visibile in JDK Mission Control
+// avviando la JVM con -XX:StartFlightRecording
+@Name("sph.Phase")
+@Label("SPH Phase")
+@Category("SPH")
+@Description("Duration of one phase of a simulation substep")
+class PhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long nanos;
+
+    @Label("Particles")
+    int particles;
+}
@@ -0,0 +1,40 @@
+// Kernel poly6, la cui derivata é usata per la forza di viscositá
+// (equivalente a Utils.poly6 e Utils.poly6Gradient)
+class Poly6Kernel extends Kernel {
+    private final double valueScale;
+    private final double gradientScale;
+
+    // Costruttore
+    public Poly6Kernel(double smoothRadius) {
+        super(smoothRadius);
+        double eighthPower = Math.pow(squaredSmoothRadius, 4);
+        this.valueScale = 4.0 / (Math.PI * eighthPower);
+        this.gradientScale = -24.0 / (Math.PI * eighthPower);
+    }
+
+    // Costante di normalizzazione della derivata, usata dal percorso vettoriale
+    public double getGradientScale() {
+        return gradientScale;
+    }
+
+    @Override
+    public double value(double dist) {
+        if (dist < 0 || dist > smoothRadius) return 0;
+        return valueSquared(dist * dist);
+    }
+
+    @Override
+    public double gradient(double dist) {
+        if (dist < 0 || dist > smoothRadius) return 0;
+        double diff = squaredSmoothRadius - dist * dist;
+        return gradientScale * diff * diff * dist;
+    }
+
+    // Il poly6 dipende solo da dist^2, la radice non serve
+    @Override
+    public double valueSquared(double distSquared) {
+        if (distSquared > squaredSmoothRadius) return 0;
+        double diff = squaredSmoothRadius - distSquared;
+        return diff * diff * diff * valueScale;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+
+// Confronto tra il motore in doppia precisione (Fluid) e quello in singola precisione (FloatFluid):
+// i due motori partono dalle stesse particelle e vengono fatti avanzare in parallelo, e ogni
+// reportInterval frame viene stampato quanto le particelle in float si sono allontanate
+// da quelle in double (posizione, velocitá e densitá).
+// FloatFluid usa sempre kernel tabulati, quindi anche Fluid deve usare kernel tabulati con la stessa
+// tabella (vedi tabulated), altrimenti la deriva misura anche l'errore di interpolazione
+public class PrecisionComparison {
+    private final Fluid reference;
+    private final FloatFluid candidate;
+    private final ArrayList<Particle> referenceParticles;
+    private final ArrayList<Particle> candidateParticles;
+    private final int windowWidth;
+    private final int windowHeight;
+
+    // Costruttore, i due motori devono essere creati da due liste con le stesse particelle nello stesso
+    // ordine. Le liste vengono copiate subito perché il riordino di Morton permuta quelle dei motori
+    public PrecisionComparison(Fluid reference, FloatFluid candidate, int windowWidth, int windowHeight) {
+        if (reference.getParticleCount() != candidate.getParticleCount()) {
+            throw new IllegalArgumentException("The two simulations have a different number of particles");
+        }
+        this.reference = reference;
+        this.candidate = candidate;
+        this.referenceParticles = new ArrayList<>(reference.getParticles());
+        this.candidateParticles = new ArrayList<>(candidate.getParticles());
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+    }
+
+    // Metodo per ottenere il kernel da passare a entrambi i motori: kernel stesso se é giá tabulato,
+    // altrimenti la sua tabella con lo stesso numero di intervalli usato da FloatFluid
+    public static Kernel tabulated(Kernel kernel) {
+        if (kernel instanceof TabulatedKernel) return kernel;
+        return new TabulatedKernel(kernel, FloatFluid.KERNEL_SAMPLES);
+    }
+
+    // Metodo per eseguire frames step su entrambi i motori, stampando la deriva ogni reportInterval frame
+    public void run(double dt, int substeps, int frames, int reportInterval) {
+        System.out.println("Particles:                      " + reference.getParticleCount());
+        System.out.printf("%8s %14s %14s %14s %14s %10s %10s%n", "Frame", "Max Pos Drift", "RMS Pos Drift", "RMS Vel Drift", "Rel Density", "Double ms", "Float ms");
+        long referenceTime = 0;
+        long candidateTime = 0;
+        for (int frame = 1; frame <= frames; frame++) {
+            long startTime = System.nanoTime();
+            reference.newStep(dt, substeps, windowWidth, windowHeight);
+            long middleTime = System.nanoTime();
+            candidate.newStep(dt, substeps, windowWidth, windowHeight);
+            referenceTime += middleTime - startTime;
+            candidateTime += System.nanoTime() - middleTime;
+            if (frame % reportInterval == 0 || frame == frames) {
+                printDrift(frame, referenceTime, candidateTime);
+            }
+        }
+    }
+
+    // Metodo per stampare la deriva corrente: massimo e RMS dello scostamento di posizione,
+    // RMS dello scostamento di velocitá e scostamento medio relativo della densitá
+    private void printDrift(int frame, long referenceTime, long candidateTime) {
+        int count = referenceParticles.size();
+        double maxPositionDrift = 0;
+        double positionDriftSum = 0;
+        double velocityDriftSum = 0;
+        double densityDriftSum = 0;
+        for (int i = 0; i < count; i++) {
+            Particle expected = referenceParticles.get(i);
+            Particle actual = candidateParticles.get(i);
+            double dx = actual.position.x - expected.position.x;
+            double dy = actual.position.y - expected.position.y;
+            double positionDrift = dx * dx + dy * dy;
+            maxPositionDrift = Math.max(maxPositionDrift, positionDrift);
+            positionDriftSum += positionDrift;
+            double dvx = actual.velocity.x - expected.velocity.x;
+            double dvy = actual.velocity.y - expected.velocity.y;
+            velocityDriftSum += dvx * dvx + dvy * dvy;
+            if (expected.density > 0) {
+                densityDriftSum += Math.abs(actual.density - expected.density) / expected.density;
+            }
+        }
+        System.out.printf("%8d %14.6g %14.6g %14.6g %14.6g %10.1f %10.1f%n", frame,
+            Math.sqrt(maxPositionDrift), Math.sqrt(positionDriftSum / count), Math.sqrt(velocityDriftSum / count),
+            densityDriftSum / count, referenceTime / 1_000_000.0 / frame, candidateTime / 1_000_000.0 / frame);
+    }
+}
@@ -0,0 +1,100 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Rendering delle particelle scrivendo direttamente nell'int[] che fa da raster di una BufferedImage,
+// al posto di una chiamata a Color.getHSBColor e Graphics2D.fillOval per ogni particella.
+// I colori per velocitá sono precalcolati in una lookup table, e l'immagine puó essere divisa in
+// bande orizzontali disegnate in parallelo: ogni banda scrive solo le proprie righe, quindi non serve sincronizzazione.
+// Lo sfondo é trasparente, cosí l'immagine puó essere disegnata sopra il campo di densitá
+class RasterRenderer {
+    private static final int LUT_SIZE = 256;
+    private static final double MAX_SPEED = 4;
+
+    private final int[] colorTable = new int[LUT_SIZE];
+    private final int bands;
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] discOffsetX = new int[0];
+    private int[] discOffsetY = new int[0];
+    private int discRadius = -1;
+
+    // Costruttore, bands é il numero di bande orizzontali disegnate in parallelo (1 = sequenziale)
+    public RasterRenderer(int bands) {
+        this.bands = Math.max(1, bands);
+        // stessa scala di colori di Animation.showSimulation: 2/3 = blu (lento), 0 = rosso (veloce)
+        for (int k = 0; k < LUT_SIZE; k++) {
+            double t = (double) k / (LUT_SIZE - 1);
+            float hue = (float) ((2.0 / 3.0) * (1.0 - t));
+            colorTable[k] = Color.HSBtoRGB(hue, 1.0f, 1.0f);
+        }
+    }
+
+    // Helper method che precalcola gli offset dei pixel del disco di raggio radius
+    private void prepareDisc(int radius) {
+        if (radius == discRadius) return;
+        int size = 2 * radius + 1;
+        int[] offsetX = new int[size * size];
+        int[] offsetY = new int[size * size];
+        int count = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if (dx * dx + dy * dy <= radius * radius) {
+                    offsetX[count] = dx;
+                    offsetY[count] = dy;
+                    count++;
+                }
+            }
+        }
+        discOffsetX = Arrays.copyOf(offsetX, count);
+        discOffsetY = Arrays.copyOf(offsetY, count);
+        discRadius = radius;
+    }
+
+    // Metodo per disegnare la snapshot nell'immagine, che viene ricreata solo se cambia la dimensione
+    public BufferedImage render(FrameSnapshot snapshot, int width, int height) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        prepareDisc(snapshot.radius);
+
+        int bandHeight = (height + bands - 1) / bands;
+        if (bands == 1) {
+            renderBand(snapshot, width, 0, height);
+        } else {
+            IntStream.range(0, bands).parallel().forEach(band -> {
+                int top = band * bandHeight;
+                renderBand(snapshot, width, top, Math.min(height, top + bandHeight));
+            });
+        }
+        return image;
+    }
+
+    // Metodo per disegnare le righe [top, bottom) dell'immagine
+    private void renderBand(FrameSnapshot snapshot, int width, int top, int bottom) {
+        final int[] pixels = this.pixels;
+        Arrays.fill(pixels, top * width, bottom * width, 0);
+        float[] positions = snapshot.positions;
+        float[] velocities = snapshot.velocities;
+        int radius = discRadius;
+        for (int i = 0; i < snapshot.count; i++) {
+            int x = (int) positions[2 * i];
+            int y = (int) positions[2 * i + 1];
+            if (y + radius < top || y - radius >= bottom) continue;
+
+            double speed = velocities[2 * i] * velocities[2 * i] + velocities[2 * i + 1] * velocities[2 * i + 1];
+            int colorIndex = (int) (speed / MAX_SPEED * (LUT_SIZE - 1));
+            int color = colorTable[colorIndex < LUT_SIZE ? colorIndex : LUT_SIZE - 1];
+
+            for (int k = 0; k < discOffsetX.length; k++) {
+                int px = x + discOffsetX[k];
+                int py = y + discOffsetY[k];
+                if (px < 0 || px >= width || py < top || py >= bottom) continue;
+                pixels[py * width + px] = color;
+            }
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
 
@@ -6,20 +8,52 @@ public class SPH {
 
         CommandLineParser parser = new CommandLineParser(args);
         
-        // Print stats
-        final boolean verbose = false;
+        // Metriche per fase, attivabili anche a runtime con il tasto M nella finestra
+        Metrics.setEnabled(parser.isMetrics());
+
+        // Simulazione distribuita: senza --rank questo processo avvia un processo di calcolo
+        // per slab e ne attende la fine
+        if (parser.getProcesses() > 0 && parser.getRank() < 0) {
+            try {
+                int failed = DistributedSimulation.launch(args, parser.getProcesses());
+                if (failed > 0) {
+                    System.err.println(failed + " of " + parser.getProcesses() + " processes failed");
+                }
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Cannot launch the distributed simulation: " + e);
+            }
+            return;
+        }
+
+        // Ripresa da un checkpoint: parametri del fluido, griglia e particelle vengono dal file
+        Checkpoint checkpoint = null;
+        if (parser.getRestore() != null) {
+            try {
+                checkpoint = Checkpoint.read(Paths.get(parser.getRestore()));
+            } catch (IOException e) {
+                System.err.println("Cannot restore checkpoint: " + e);
+                return;
+            }
+            System.out.println("Restored " + checkpoint.count + " particles at substep " + checkpoint.substepCount + " from " + parser.getRestore());
+        }
 
         // Simulation Parameters
         final double dt = parser.getDt(); 
         final int substeps = parser.getSubsteps();
-        final Vector2D gravity = new Vector2D(0, 0.02);
+        final Vector2D gravity = checkpoint != null ? new Vector2D(checkpoint.gravityX, checkpoint.gravityY) : new Vector2D(0, 0.02);
         // Vector2D gravity = new Vector2D(0, 0);
         final double mass = parser.getMass();
-        final double smoothRadius = parser.getSmoothRadius();
+        final double smoothRadius = checkpoint != null ? checkpoint.smoothRadius : parser.getSmoothRadius();
         final int radius = 1;
-        final double density = mass * Utils.spiky(0, smoothRadius);
-        final double pressureConstant = parser.getPressureConstant();
-        final double viscosityConstant = parser.getViscosityConstant();
+        Kernel pressureKernel = Kernel.create(parser.getKernel(), smoothRadius);
+        Kernel viscosityKernel = new Poly6Kernel(smoothRadius);
+        if (parser.getKernelTableSize() > 0) {
+            pressureKernel = new TabulatedKernel(pressureKernel, parser.getKernelTableSize());
+            viscosityKernel = new TabulatedKernel(viscosityKernel, parser.getKernelTableSize());
+        }
+        final double density = checkpoint != null ? checkpoint.density : mass * pressureKernel.value(0);
+        final double pressureConstant = checkpoint != null ? checkpoint.pressureConstant : parser.getPressureConstant();
+        final double viscosityConstant = checkpoint != null ? checkpoint.viscosityConstant : parser.getViscosityConstant();
         final double dampingFactor = 1;
 
         // Fluid and Particles parameters
@@ -33,20 +67,214 @@ public class SPH {
         final int windowHeight = 300;
         final int maxWidth = parser.getMaxWindowWidth();
         final int maxHeight = parser.getMaxWindowHeight();
-        final int gridWidth = (int) Math.ceil(maxWidth / smoothRadius);
-        final int gridHeight = (int) Math.ceil(maxHeight / smoothRadius);
+        final int gridWidth = checkpoint != null ? checkpoint.gridWidth : (int) Math.ceil(maxWidth / smoothRadius);
+        final int gridHeight = checkpoint != null ? checkpoint.gridHeight : (int) Math.ceil(maxHeight / smoothRadius);
+        final double skin = checkpoint != null ? checkpoint.skin : parser.getSkin();
 
-        ArrayList<Particle> particles = new ArrayList<>();
-        for (int x = 0; x < Math.floor(Math.sqrt(partAmount)); x++) {
-            for (int y = 0; y < Math.floor(Math.sqrt(partAmount)); y++) {
-                particles.add(new Particle(radius, new Vector2D(radius + x * offset, windowHeight - (baseHeight + y * offset)), new Vector2D(0, 0), smoothRadius, mass, dampingFactor));
+        // Riproduzione di una traiettoria registrata: i frame vengono letti dal file alla frequenza
+        // target, senza simulare il fluido
+        if (parser.getReplay() != null) {
+            TrajectoryPlayer player;
+            try {
+                player = new TrajectoryPlayer(Paths.get(parser.getReplay()));
+            } catch (IOException e) {
+                System.err.println("Cannot open trajectory: " + e);
+                return;
             }
+            Animation animation = new Animation(targetFPS, windowWidth, windowHeight);
+            animation.setEnvironment(player);
+            animation.setRenderer(parser.getRenderer(), parser.getRenderBands());
+            animation.start(dt, substeps);
+            return;
+        }
+
+        // Processo di calcolo della simulazione distribuita
+        if (parser.getRank() >= 0) {
+            runSlab(parser, pressureKernel, viscosityKernel, density, pressureConstant, viscosityConstant, gravity, skin, windowHeight);
+            return;
         }
 
-        Fluid simulation = new Fluid(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+        ArrayList<Particle> particles = checkpoint != null ? checkpoint.createParticles() : createParticles(partAmount, radius, offset, baseHeight, windowHeight, smoothRadius, mass, dampingFactor);
+
+        Fluid fluid = null;
+        FloatFluid floatFluid = null;
+        switch (parser.getPrecision()) {
+            case "double":
+                fluid = new Fluid(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+                break;
+            case "float":
+                floatFluid = new FloatFluid(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+                break;
+            case "compare":
+                // stessi kernel tabulati per entrambi i motori, cosí la deriva dipende solo dalla precisione
+                pressureKernel = PrecisionComparison.tabulated(pressureKernel);
+                viscosityKernel = PrecisionComparison.tabulated(viscosityKernel);
+                fluid = new Fluid(particles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+                ArrayList<Particle> floatParticles = checkpoint != null ? checkpoint.createParticles() : createParticles(partAmount, radius, offset, baseHeight, windowHeight, smoothRadius, mass, dampingFactor);
+                floatFluid = new FloatFluid(floatParticles, density, pressureConstant, viscosityConstant, gravity, gridWidth, gridHeight);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown precision: " + parser.getPrecision());
+        }
+        // un checkpoint scritto con la risoluzione adattiva riprende i raggi per particella, che come
+        // la risoluzione adattiva richiedono la lista dei neighbor completa
+        final boolean variableRadius = checkpoint != null && checkpoint.hasVariableRadius();
+        if (fluid != null) {
+            boolean symmetricPairs = parser.isSymmetricPairs();
+            if (symmetricPairs && variableRadius) {
+                System.err.println("--symmetricpairs is not supported with per-particle smoothing radii from --restore, the full neighbor list is used");
+                symmetricPairs = false;
+            }
+            fluid.setNeighborSkin(skin);
+            fluid.setSparseGrid(parser.isSparseGrid());
+            fluid.setKernels(pressureKernel, viscosityKernel);
+            fluid.setReorderInterval(parser.getReorderInterval());
+            fluid.setScheduler(new TileScheduler(parser.getThreads(), parser.getTileSize()));
+            fluid.setSymmetricPairs(symmetricPairs);
+            fluid.setFusedPasses(parser.isFusedPasses());
+            fluid.setVectorKernels(parser.isVectorKernels());
+            fluid.setAdaptiveTimestep(parser.isAdaptiveTimestep(), parser.getCourant());
+            if (parser.isSleep() && symmetricPairs) {
+                System.err.println("--sleep is not supported with --symmetricpairs, all particles stay active");
+            } else if (parser.isSleep() && parser.isAdaptiveResolution()) {
+                System.err.println("--sleep is not supported with --adaptiveresolution, all particles stay active");
+            } else if (parser.isSleep() && variableRadius) {
+                System.err.println("--sleep is not supported with per-particle smoothing radii from --restore, all particles stay active");
+            } else {
+                fluid.setSleeping(parser.isSleep(), parser.getSleepSpeed(), parser.getSleepAcceleration(), parser.getSleepSteps());
+            }
+            if (checkpoint != null) {
+                fluid.restoreState(checkpoint);
+            }
+            // emettitori e pozzi, le particelle emesse hanno la stessa distanza e massa di quelle iniziali
+            if (parser.getEmitters() != null || parser.getSinks() != null) {
+                fluid.setSources(parser.getEmitters() != null ? Emitter.parse(parser.getEmitters(), offset, mass) : new ArrayList<>(),
+                    parser.getSinks() != null ? Sink.parse(parser.getSinks()) : new ArrayList<>(), Math.max(parser.getPoolSize(), particles.size()));
+            }
+            // risoluzione adattiva, la massa e la distanza di base sono quelle delle particelle iniziali
+            if (parser.isAdaptiveResolution() && symmetricPairs) {
+                System.err.println("--adaptiveresolution is not supported with --symmetricpairs, resolution stays fixed");
+            } else if (parser.isAdaptiveResolution()) {
+                fluid.setAdaptiveResolution(true, mass, offset, parser.getMaxMerge(), parser.getCalmSpeed(), Math.max(parser.getPoolSize(), particles.size()));
+            }
+        }
+        if (floatFluid != null) {
+            floatFluid.setNeighborSkin(skin);
+            floatFluid.setSparseGrid(parser.isSparseGrid());
+            floatFluid.setKernels(pressureKernel, viscosityKernel);
+            floatFluid.setReorderInterval(parser.getReorderInterval());
+            floatFluid.setScheduler(new TileScheduler(parser.getThreads(), parser.getTileSize()));
+            if (parser.isAdaptiveTimestep()) {
+                System.err.println("--adaptivedt is only supported with --precision double, float uses fixed substeps");
+            }
+            if (parser.isSleep()) {
+                System.err.println("--sleep is only supported with --precision double");
+            }
+            if (parser.getEmitters() != null || parser.getSinks() != null) {
+                System.err.println("--emitters and --sinks are only supported with --precision double");
+            }
+            if (parser.isAdaptiveResolution()) {
+                System.err.println("--adaptiveresolution is only supported with --precision double");
+            }
+            if (variableRadius) {
+                System.err.println("Per-particle smoothing radii from --restore are only supported with --precision double, all particles use smoothRadius");
+            }
+            if (checkpoint != null) {
+                floatFluid.restoreState(checkpoint);
+            }
+        }
+
+        // Confronto tra motore in double e in float: stessi frame su entrambi e report della deriva
+        if (fluid != null && floatFluid != null) {
+            PrecisionComparison comparison = new PrecisionComparison(fluid, floatFluid, windowWidth, windowHeight);
+            comparison.run(dt, substeps, parser.getFrames(), 10);
+            return;
+        }
+        AbstractFluid simulation = fluid != null ? fluid : floatFluid;
+        CheckpointWriter checkpointWriter = null;
+        if (parser.getCheckpoint() != null) {
+            checkpointWriter = new CheckpointWriter(simulation, Paths.get(parser.getCheckpoint()), parser.getCheckpointInterval());
+        }
+        MetricsExporter metricsExporter = new MetricsExporter(parser.getMetricsFile() != null ? Paths.get(parser.getMetricsFile()) : null, parser.getMetricsInterval());
+        TrajectoryRecorder recorder = null;
+        if (parser.getRecord() != null && fluid != null && fluid.getPool() != null) {
+            System.err.println("--record is not supported with --emitters, --sinks and --adaptiveresolution, the particle count changes between frames");
+        } else if (parser.getRecord() != null) {
+            recorder = new TrajectoryRecorder(Paths.get(parser.getRecord()), parser.getRecordFormat());
+        }
+
+        // Modalitá batch senza finestra: numero fissato di frame e report finale
+        if (parser.isHeadless()) {
+            BatchSimulation batch = new BatchSimulation(simulation, windowWidth, windowHeight);
+            batch.setCheckpointWriter(checkpointWriter);
+            batch.setTrajectoryRecorder(recorder);
+            batch.setMetricsExporter(metricsExporter);
+            batch.run(dt, substeps, parser.getFrames());
+            return;
+        }
 
         Animation animation = new Animation(targetFPS, windowWidth, windowHeight);
         animation.setEnvironment(simulation);
-        animation.start(dt, substeps, verbose);
+        animation.setRenderer(parser.getRenderer(), parser.getRenderBands());
+        animation.setDensityOverlay(parser.getDensityOverlay());
+        animation.setCheckpointWriter(checkpointWriter);
+        animation.setTrajectoryRecorder(recorder);
+        animation.setMetricsExporter(metricsExporter);
+        animation.start(dt, substeps);
+    }
+
+    // Metodo eseguito da ciascun processo della simulazione distribuita. Il blocco iniziale di particelle
+    // viene ripetuto al centro di ogni slab, quindi le particelle per processo restano le stesse al
+    // crescere del numero di processi (weak scaling). Il dominio é largo una slab per processo
+    private static void runSlab(CommandLineParser parser, Kernel pressureKernel, Kernel viscosityKernel, double density, double pressureConstant,
+                                double viscosityConstant, Vector2D gravity, double skin, int windowHeight) {
+        final int radius = 1;
+        final int offset = 3;
+        final int processes = parser.getProcesses();
+        final int rank = parser.getRank();
+        final double smoothRadius = parser.getSmoothRadius();
+        final int side = (int) Math.floor(Math.sqrt(parser.getParticleAmount()));
+        final int slabWidth = 2 * (radius + side * offset);
+        final int domainWidth = slabWidth * processes;
+        if (parser.getRestore() != null || parser.getCheckpoint() != null || parser.getRecord() != null
+            || parser.isAdaptiveTimestep() || parser.isSleep() || !parser.getPrecision().equals("double")
+            || parser.getEmitters() != null || parser.getSinks() != null || parser.isAdaptiveResolution()) {
+            System.err.println("Checkpoints, recording, --adaptivedt, --sleep, sources, adaptive resolution and float precision are not supported with --processes, ignored");
+        }
+
+        ArrayList<Particle> particles = createParticles(parser.getParticleAmount(), radius, offset, radius, windowHeight, smoothRadius, parser.getMass(), 1);
+        for (Particle particle : particles) {
+            particle.position.x += rank * slabWidth + slabWidth / 4;
+        }
+        Fluid fluid = new Fluid(particles, density, pressureConstant, viscosityConstant, gravity,
+            (int) Math.ceil(domainWidth / smoothRadius), (int) Math.ceil(windowHeight / smoothRadius));
+        fluid.setNeighborSkin(skin);
+        fluid.setSparseGrid(true);
+        fluid.setKernels(pressureKernel, viscosityKernel);
+        fluid.setReorderInterval(parser.getReorderInterval());
+        fluid.setScheduler(new TileScheduler(parser.getThreads(), parser.getTileSize()));
+        fluid.setSymmetricPairs(parser.isSymmetricPairs());
+        fluid.setFusedPasses(parser.isFusedPasses());
+        fluid.setVectorKernels(parser.isVectorKernels());
+
+        try (SocketTransport transport = new SocketTransport(rank, processes, parser.getPort())) {
+            SlabDomain domain = new SlabDomain(transport, slabWidth, 2 * smoothRadius, skin, rank * particles.size());
+            fluid.setDomain(domain);
+            new DistributedSimulation(fluid, domain, domainWidth, windowHeight).run(parser.getDt(), parser.getSubsteps(), parser.getFrames());
+        } catch (IOException e) {
+            System.err.println("Process " + rank + " failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    // Metodo per creare il blocco quadrato di particelle iniziale, appoggiato sul fondo della finestra
+    private static ArrayList<Particle> createParticles(int partAmount, int radius, int offset, int baseHeight, int windowHeight, double smoothRadius, double mass, double dampingFactor) {
+        ArrayList<Particle> particles = new ArrayList<>();
+        for (int x = 0; x < Math.floor(Math.sqrt(partAmount)); x++) {
+            for (int y = 0; y < Math.floor(Math.sqrt(partAmount)); y++) {
+                particles.add(new Particle(radius, new Vector2D(radius + x * offset, windowHeight - (baseHeight + y * offset)), new Vector2D(0, 0), smoothRadius, mass, dampingFactor));
+            }
+        }
+        return particles;
     }
 }
@@ -0,0 +1,30 @@
+// Operazioni comuni ai motori di simulazione (Fluid in double, FloatFluid in float),
+// usate dal thread di simulazione, dal rendering e dalla modalitá batch
+interface Simulation {
+    // Metodo per eseguire un nuovo step di simulazione, ovvero un ciclo di substeps
+    void newStep(double dt, int substeps, int windowWidth, int windowHeight);
+
+    // Metodo per copiare posizioni e velocitá correnti in una snapshot per il rendering
+    void writeSnapshot(FrameSnapshot snapshot);
+
+    // Metodo per campionare il campo di densitá nella snapshot, un campione ogni resolution pixel
+    void writeDensityField(FrameSnapshot snapshot, int resolution, int windowWidth, int windowHeight);
+
+    // Metodo per ottenere il tempo totale (in nanosecondi) speso in una fase dall'ultimo reset
+    long getPhaseTotal(Phase phase);
+
+    // Metodo per azzerare i tempi totali delle fasi
+    void resetPhaseTotals();
+
+    // Metodo per sapere se il tempo di una fase é compreso in quello di un'altra
+    boolean isPhaseFused(Phase phase);
+
+    // Metodo per ottenere il numero di substep eseguiti dalla creazione della simulazione
+    long getSubstepCount();
+
+    // Metodo per ottenere il numero di particelle simulate
+    int getParticleCount();
+
+    // Metodo per otterenere le dimensioni del box di simulazione
+    Vector2D returnBoundary();
+}
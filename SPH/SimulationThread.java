@@ -0,0 +1,110 @@
+// Thread dedicato alla simulazione: esegue newStep alla frequenza target e, alla fine di ogni frame,
+// pubblica una snapshot nel SnapshotBuffer. In questo modo i substep non girano piú sull'Event
+// Dispatch Thread di Swing e la finestra resta reattiva anche quando la simulazione é pesante
+class SimulationThread extends Thread {
+    private final Simulation simulation;
+    private final SnapshotBuffer snapshots;
+    private final double dt;
+    private final int substeps;
+    private final int targetFPS;
+    private volatile int windowWidth;
+    private volatile int windowHeight;
+    private volatile boolean running = true;
+    private volatile int densityResolution = 0;
+    private CheckpointWriter checkpointWriter = null;
+    private TrajectoryRecorder recorder = null;
+    private MetricsExporter metricsExporter = null;
+
+    // Costruttore
+    public SimulationThread(Simulation simulation, SnapshotBuffer snapshots, double dt, int substeps, int targetFPS) {
+        super("sph-simulation");
+        setDaemon(true);
+        this.simulation = simulation;
+        this.snapshots = snapshots;
+        this.dt = dt;
+        this.substeps = substeps;
+        this.targetFPS = targetFPS;
+    }
+
+    // Metodo per aggiornare le dimensioni della finestra, chiamato dal thread di Swing
+    public void setWindowSize(int windowWidth, int windowHeight) {
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+    }
+
+    // Metodo per attivare il campo di densitá nelle snapshot, con un campione ogni resolution
+    // pixel (0 = disattivato)
+    public void setDensityResolution(int resolution) {
+        this.densityResolution = resolution;
+    }
+
+    // Metodo per attivare i checkpoint periodici, da chiamare prima di start
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter) {
+        this.checkpointWriter = checkpointWriter;
+    }
+
+    // Metodo per registrare la traiettoria di ogni frame, da chiamare prima di start
+    public void setTrajectoryRecorder(TrajectoryRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // Metodo per esportare periodicamente le metriche, da chiamare prima di start
+    public void setMetricsExporter(MetricsExporter metricsExporter) {
+        this.metricsExporter = metricsExporter;
+    }
+
+    // Metodo per fermare il thread al termine del frame corrente
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+
+    @Override
+    public void run() {
+        long framePeriod = 1_000_000_000L / targetFPS;
+        long nextFrameTime = System.nanoTime();
+        long frame = 0;
+        while (running) {
+            int width = windowWidth;
+            int height = windowHeight;
+            if (width > 0 && height > 0) {
+                long stepStartTime = System.nanoTime();
+                simulation.newStep(dt, substeps, width, height);
+                Metrics.recordFrame(frame, System.nanoTime() - stepStartTime, simulation.getParticleCount());
+                FrameSnapshot snapshot = snapshots.back();
+                simulation.writeSnapshot(snapshot);
+                int resolution = densityResolution;
+                if (resolution > 0) {
+                    simulation.writeDensityField(snapshot, resolution, width, height);
+                } else {
+                    snapshot.densityWidth = 0;
+                }
+                snapshot.frame = frame++;
+                snapshots.publish();
+                if (recorder != null) {
+                    recorder.onFrame(simulation, frame - 1);
+                }
+                if (metricsExporter != null) {
+                    metricsExporter.onFrame(frame);
+                }
+                if (checkpointWriter != null) {
+                    checkpointWriter.onFrame(frame);
+                }
+            }
+
+            // La simulazione non va oltre la frequenza target, cosí il tempo simulato per secondo
+            // resta lo stesso del Timer usato in precedenza
+            nextFrameTime += framePeriod;
+            long sleepTime = nextFrameTime - System.nanoTime();
+            if (sleepTime > 0) {
+                try {
+                    Thread.sleep(sleepTime / 1_000_000, (int) (sleepTime % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                nextFrameTime = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Pozzo: le particelle che entrano nel rettangolo di vertice (x, y) e lato width x height
+// vengono rimosse dalla simulazione
+class Sink {
+    public final double x;
+    public final double y;
+    public final double width;
+    public final double height;
+
+    // Costruttore
+    public Sink(double x, double y, double width, double height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    // Metodo per sapere se il punto (px, py) é dentro il pozzo
+    public boolean contains(double px, double py) {
+        return px >= x && px < x + width && py >= y && py < y + height;
+    }
+
+    // Metodo per rimuovere le particelle entrate nel pozzo, ritorna il numero di particelle rimosse.
+    // Lo store viene scorso dalla fine, cosí la particella spostata al posto di quella rimossa
+    // é giá stata controllata
+    public int drain(ParticleStore store, ParticlePool pool) {
+        int drained = 0;
+        for (int i = store.count - 1; i >= 0; i--) {
+            if (contains(store.positionX[i], store.positionY[i])) {
+                pool.remove(store, i);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    // Metodo per leggere una lista di pozzi nel formato "x,y,width,height;x,y,width,height;..."
+    public static List<Sink> parse(String spec) {
+        List<Sink> sinks = new ArrayList<>();
+        for (String entry : spec.split(";")) {
+            String[] values = entry.split(",");
+            if (values.length != 4) {
+                throw new IllegalArgumentException("Invalid sink, expected x,y,width,height: " + entry);
+            }
+            sinks.add(new Sink(Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim()),
+                Double.parseDouble(values[2].trim()), Double.parseDouble(values[3].trim())));
+        }
+        return sinks;
+    }
+}
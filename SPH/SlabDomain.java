@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Dominio di un processo della simulazione distribuita: lo spazio é diviso in slab verticali di
+// uguale larghezza, una per processo (la prima e l'ultima si estendono senza limite verso l'esterno),
+// e ogni processo possiede le particelle della propria slab. All'inizio di ogni substep avviene uno
+// scambio con i vicini, completo o di solo aggiornamento.
+// Scambio completo:
+// 1. le particelle uscite dalla slab vengono tolte dallo store (compattandolo) e inviate al vicino,
+//    che le aggiunge alle proprie (migrazione)
+// 2. le particelle entro halo + skin dai bordi vengono scelte come ghost per il vicino: il vicino le
+//    usa nel calcolo di densitá e forze delle proprie particelle ma non le integra. Anche le
+//    particelle appena migrate restano come ghost nel processo che le ha inviate
+// Scambio di aggiornamento: vengono inviate le posizioni e le velocitá correnti delle stesse ghost
+// dell'ultimo scambio completo, nello stesso ordine e senza migrazioni, quindi lo store del vicino
+// mantiene la stessa disposizione e la sua lista dei neighbor resta valida (lo skin di Verlet viene
+// riusato come senza processi). Lo scambio é completo se la lista dei neighbor non é valida, se una
+// particella posseduta si é spostata lungo x di piú di skin / 2 dall'ultima scelta delle ghost, o se
+// nello scambio precedente sono arrivati migranti, che vanno inclusi nelle ghost. Finché nessuna
+// particella si sposta di piú di skin / 2 le ghost scelte con il margine skin restano sufficienti,
+// e le particelle possedute restano entro skin / 2 dalla propria slab.
+// Lo store contiene quindi prima le particelle possedute e poi le ghost, che vengono escluse dal
+// conteggio alla fine del substep. Con halo pari a 2 * smoothRadius anche la densitá delle ghost che
+// interagiscono con le particelle possedute é completa, cosí basta un solo scambio per substep
+// invece di uno per le posizioni e uno per densitá e pressione.
+// Lo scambio con i due vicini segue un ordine fisso che non puó bloccarsi: in ogni coppia di vicini
+// invia per primo il processo di sinistra, e i processi pari scambiano prima a destra e poi a
+// sinistra, quelli dispari il contrario.
+// Formato di un messaggio: int migranti, int ghost, int completo (1 se la disposizione delle ghost
+// é cambiata), per ogni migrante massa, x, y, vx, vy (double) e id (int), per ogni ghost massa, x, y, vx, vy
+class SlabDomain {
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int MIGRANT_BYTES = 5 * Double.BYTES + Integer.BYTES;
+    private static final int GHOST_BYTES = 5 * Double.BYTES;
+
+    private final HaloTransport transport;
+    private final double left;
+    private final double right;
+    private final double halo;
+    private final double skin;
+    private final int firstId;
+    private final ByteBuffer[] outgoing = new ByteBuffer[2];
+    private final ByteBuffer[] incoming = new ByteBuffer[2];
+    private final int[] migrantCount = new int[2];
+    private final int[] ghostCount = new int[2];
+    // indici delle particelle possedute inviate come ghost a ciascun vicino nell'ultimo scambio completo
+    // e posizione x delle particelle possedute in quel momento
+    private final int[][] ghostIndices = { new int[0], new int[0] };
+    private final int[] selectedCount = new int[2];
+    private double[] selectionX = new double[0];
+    private boolean migrantsReceived = true;
+    private int owned = 0;
+    private int ghosts = 0;
+    private long migrated = 0;
+
+    // Costruttore, slabWidth é la larghezza di ciascuna slab e deve essere almeno il doppio di
+    // halo + skin, cosí una particella é ghost al piú per un vicino. skin é quello della lista dei
+    // neighbor. firstId viene sommato agli id delle particelle iniziali, per renderli unici tra i processi
+    public SlabDomain(HaloTransport transport, double slabWidth, double halo, double skin, int firstId) {
+        if (slabWidth < 2 * (halo + skin)) {
+            throw new IllegalArgumentException("Slab width " + slabWidth + " is smaller than twice the halo " + halo + " plus the skin " + skin);
+        }
+        int rank = transport.getRank();
+        this.transport = transport;
+        this.left = rank == 0 ? Double.NEGATIVE_INFINITY : rank * slabWidth;
+        this.right = rank == transport.getProcesses() - 1 ? Double.POSITIVE_INFINITY : (rank + 1) * slabWidth;
+        this.halo = halo;
+        this.skin = skin;
+        this.firstId = firstId;
+        for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+            outgoing[side] = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // Metodo chiamato da Fluid.setDomain, le particelle presenti nello store sono quelle possedute
+    public void attach(ParticleStore store) {
+        for (int i = 0; i < store.count; i++) {
+            store.id[i] += firstId;
+        }
+        owned = store.count;
+    }
+
+    public int getRank() {
+        return transport.getRank();
+    }
+
+    public int getProcesses() {
+        return transport.getProcesses();
+    }
+
+    // Numero di particelle possedute dal processo
+    public int getOwnedCount() {
+        return owned;
+    }
+
+    // Numero di ghost dell'ultimo substep
+    public int getGhostCount() {
+        return ghosts;
+    }
+
+    // Numero totale di particelle inviate ai vicini
+    public long getMigratedCount() {
+        return migrated;
+    }
+
+    // Metodo per scambiare migranti e ghost con i vicini, dopo la chiamata lo store contiene
+    // le particelle possedute seguite dalle ghost. reselect forza uno scambio completo, da usare
+    // quando lo store é cambiato dall'ultima costruzione della lista dei neighbor (riordino).
+    // Ritorna true se la disposizione dello store é cambiata e la lista va ricostruita
+    public boolean exchange(ParticleStore store, boolean reselect) {
+        try {
+            return exchangeParticles(store, reselect || migrantsReceived || hasDrifted(store));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Helper method per sapere se una particella posseduta si é spostata lungo x di piú di skin / 2
+    // dall'ultima scelta delle ghost
+    private boolean hasDrifted(ParticleStore store) {
+        double limit = skin / 2;
+        for (int i = 0; i < owned; i++) {
+            if (Math.abs(store.positionX[i] - selectionX[i]) > limit) return true;
+        }
+        return false;
+    }
+
+    // Metodo per scartare le ghost alla fine del substep
+    public void dropGhosts(ParticleStore store) {
+        store.count = owned;
+    }
+
+    private boolean exchangeParticles(ParticleStore store, boolean full) throws IOException {
+        for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+            outgoing[side].clear().position(HEADER_BYTES);
+            migrantCount[side] = 0;
+            ghostCount[side] = 0;
+        }
+        if (full) {
+            selectGhosts(store);
+        } else {
+            for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+                for (int k = 0; k < selectedCount[side]; k++) {
+                    writeGhost(store, ghostIndices[side][k], side);
+                }
+            }
+        }
+
+        if (transport.getRank() % 2 == 0) {
+            exchangeWith(HaloTransport.RIGHT, full);
+            exchangeWith(HaloTransport.LEFT, full);
+        } else {
+            exchangeWith(HaloTransport.LEFT, full);
+            exchangeWith(HaloTransport.RIGHT, full);
+        }
+
+        // migranti ricevuti, che diventano particelle possedute
+        boolean changed = full;
+        int received = 0;
+        for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+            ByteBuffer buffer = incoming[side];
+            if (buffer == null) continue;
+            changed |= buffer.getInt(2 * Integer.BYTES) != 0;
+            int migrants = buffer.getInt(0);
+            received += migrants;
+            buffer.position(HEADER_BYTES);
+            for (int k = 0; k < migrants; k++) {
+                store.add(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getInt());
+            }
+        }
+        migrantsReceived = received > 0;
+        owned = store.count;
+        if (full) {
+            if (selectionX.length < owned) {
+                selectionX = new double[owned + owned / 8];
+            }
+            System.arraycopy(store.positionX, 0, selectionX, 0, owned);
+        }
+
+        // ghost ricevuti e, dopo uno scambio completo, copie locali dei migranti inviati
+        for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+            ByteBuffer buffer = incoming[side];
+            if (buffer != null) {
+                int ghostsReceived = buffer.getInt(Integer.BYTES);
+                for (int k = 0; k < ghostsReceived; k++) {
+                    store.add(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), -1);
+                }
+            }
+            ByteBuffer sent = outgoing[side];
+            sent.position(HEADER_BYTES);
+            for (int k = 0; k < migrantCount[side]; k++) {
+                store.add(sent.getDouble(), sent.getDouble(), sent.getDouble(), sent.getDouble(), sent.getDouble(), -1);
+                sent.getInt();
+            }
+        }
+        ghosts = store.count - owned;
+        return changed;
+    }
+
+    // Helper method dello scambio completo: toglie dallo store i migranti, scrivendoli nei messaggi,
+    // e sceglie le ghost per i vicini tra le particelle rimaste
+    private void selectGhosts(ParticleStore store) {
+        // migranti, le particelle rimaste vengono compattate mantenendo l'ordine
+        int kept = 0;
+        for (int i = 0; i < owned; i++) {
+            double x = store.positionX[i];
+            int side = x < left ? HaloTransport.LEFT : x >= right ? HaloTransport.RIGHT : -1;
+            if (side < 0) {
+                if (kept != i) store.copy(i, kept);
+                kept++;
+                continue;
+            }
+            ByteBuffer buffer = reserve(side, MIGRANT_BYTES);
+            buffer.putDouble(store.mass[i]).putDouble(x).putDouble(store.positionY[i]);
+            buffer.putDouble(store.velocityX[i]).putDouble(store.velocityY[i]).putInt(store.id[i]);
+            migrantCount[side]++;
+        }
+        migrated += migrantCount[HaloTransport.LEFT] + migrantCount[HaloTransport.RIGHT];
+        store.count = kept;
+
+        // ghost per i vicini, con il margine skin
+        double reach = halo + skin;
+        for (int side = HaloTransport.LEFT; side <= HaloTransport.RIGHT; side++) {
+            selectedCount[side] = 0;
+            if (ghostIndices[side].length < kept) {
+                ghostIndices[side] = new int[kept + kept / 8];
+            }
+        }
+        for (int i = 0; i < kept; i++) {
+            double x = store.positionX[i];
+            int side = x < left + reach && transport.hasNeighbor(HaloTransport.LEFT) ? HaloTransport.LEFT
+                : x >= right - reach && transport.hasNeighbor(HaloTransport.RIGHT) ? HaloTransport.RIGHT : -1;
+            if (side < 0) continue;
+            ghostIndices[side][selectedCount[side]++] = i;
+            writeGhost(store, i, side);
+        }
+    }
+
+    private void writeGhost(ParticleStore store, int i, int side) {
+        ByteBuffer buffer = reserve(side, GHOST_BYTES);
+        buffer.putDouble(store.mass[i]).putDouble(store.positionX[i]).putDouble(store.positionY[i]);
+        buffer.putDouble(store.velocityX[i]).putDouble(store.velocityY[i]);
+        ghostCount[side]++;
+    }
+
+    // Helper method che garantisce bytes byte liberi nel messaggio per il vicino side,
+    // raddoppiando il buffer se necessario. I ghost vengono scritti dopo tutti i migranti
+    private ByteBuffer reserve(int side, int bytes) {
+        ByteBuffer buffer = outgoing[side];
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(2 * buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            larger.put(buffer);
+            outgoing[side] = larger;
+            buffer = larger;
+        }
+        return buffer;
+    }
+
+    // Helper method per lo scambio con un vicino: nella coppia invia per primo il processo di sinistra
+    private void exchangeWith(int side, boolean full) throws IOException {
+        incoming[side] = null;
+        if (!transport.hasNeighbor(side)) return;
+        ByteBuffer message = outgoing[side];
+        message.putInt(0, migrantCount[side]).putInt(Integer.BYTES, ghostCount[side]).putInt(2 * Integer.BYTES, full ? 1 : 0);
+        message.flip();
+        if (side == HaloTransport.RIGHT) {
+            transport.send(side, message);
+            incoming[side] = transport.receive(side);
+        } else {
+            incoming[side] = transport.receive(side);
+            transport.send(side, message);
+        }
+    }
+
+    // Metodo per raccogliere sul processo 0 un vettore di valori da ciascun processo, da chiamare
+    // su tutti i processi. I valori risalgono la fila da destra a sinistra; ritorna una riga per
+    // processo sul processo 0 e null sugli altri
+    public double[][] gather(double[] values) throws IOException {
+        double[][] rows = new double[transport.getProcesses()][];
+        rows[transport.getRank()] = values;
+        if (transport.hasNeighbor(HaloTransport.RIGHT)) {
+            ByteBuffer buffer = transport.receive(HaloTransport.RIGHT);
+            while (buffer.hasRemaining()) {
+                double[] row = new double[buffer.getInt()];
+                int rank = buffer.getInt();
+                for (int k = 0; k < row.length; k++) {
+                    row[k] = buffer.getDouble();
+                }
+                rows[rank] = row;
+            }
+        }
+        if (!transport.hasNeighbor(HaloTransport.LEFT)) return rows;
+
+        ByteBuffer message = outgoing[HaloTransport.LEFT];
+        message.clear();
+        for (int rank = transport.getRank(); rank < rows.length; rank++) {
+            message = reserve(HaloTransport.LEFT, 2 * Integer.BYTES + rows[rank].length * Double.BYTES);
+            message.putInt(rows[rank].length).putInt(rank);
+            for (double value : rows[rank]) {
+                message.putDouble(value);
+            }
+        }
+        message.flip();
+        transport.send(HaloTransport.LEFT, message);
+        return null;
+    }
+}
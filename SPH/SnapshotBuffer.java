@@ -0,0 +1,36 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Scambio lock-free delle snapshot tra il thread di simulazione e il rendering.
+// Il thread di simulazione scrive sempre nel proprio buffer (back) mentre il rendering legge il suo
+// (front); il terzo buffer fa da intermediario e viene scambiato con un'unica operazione atomica.
+// Cosí il frame N puó essere disegnato mentre viene simulato il frame N + 1 senza che nessuno
+// dei due thread debba mai aspettare l'altro
+class SnapshotBuffer {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+
+    private final FrameSnapshot[] snapshots = {new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+    // indice del buffer intermedio, piú il bit FRESH se contiene una snapshot non ancora letta
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    // Buffer in cui il thread di simulazione scrive la prossima snapshot
+    public FrameSnapshot back() {
+        return snapshots[back];
+    }
+
+    // Metodo per pubblicare il buffer back appena scritto, chiamato dal thread di simulazione
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // Metodo per ottenere la snapshot piú recente, chiamato dal rendering.
+    // Se non ne sono state pubblicate di nuove ritorna la stessa della chiamata precedente
+    public FrameSnapshot acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & INDEX_MASK;
+        }
+        return snapshots[front];
+    }
+}
@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+// Transport su socket TCP di loopback: il processo rank ascolta su basePort + rank e accetta la
+// connessione del vicino di sinistra, poi si connette al vicino di destra su basePort + rank + 1.
+// Ogni messaggio é preceduto dalla sua lunghezza in byte (int little endian)
+class SocketTransport implements HaloTransport {
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private final int rank;
+    private final int processes;
+    private final SocketChannel[] channels = new SocketChannel[2];
+    private final ByteBuffer[] received = new ByteBuffer[2];
+    private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Costruttore, apre le connessioni con i vicini: ritorna solo quando entrambe sono stabilite
+    public SocketTransport(int rank, int processes, int basePort) throws IOException {
+        this.rank = rank;
+        this.processes = processes;
+        ServerSocketChannel server = null;
+        try {
+            if (rank > 0) {
+                server = ServerSocketChannel.open();
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                server.bind(new InetSocketAddress("127.0.0.1", basePort + rank));
+            }
+            if (rank < processes - 1) {
+                channels[RIGHT] = connect(new InetSocketAddress("127.0.0.1", basePort + rank + 1));
+            }
+            if (server != null) {
+                channels[LEFT] = server.accept();
+                channels[LEFT].setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        for (int side = LEFT; side <= RIGHT; side++) {
+            received[side] = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // Helper method per connettersi al vicino di destra, che potrebbe non essere ancora in ascolto
+    private static SocketChannel connect(InetSocketAddress address) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.connect(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                if (System.currentTimeMillis() > deadline) throw e;
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getRank() {
+        return rank;
+    }
+
+    @Override
+    public int getProcesses() {
+        return processes;
+    }
+
+    @Override
+    public boolean hasNeighbor(int side) {
+        return channels[side] != null;
+    }
+
+    @Override
+    public void send(int side, ByteBuffer message) throws IOException {
+        SocketChannel channel = channels[side];
+        length.clear();
+        length.putInt(message.remaining()).flip();
+        while (length.hasRemaining()) {
+            channel.write(length);
+        }
+        while (message.hasRemaining()) {
+            channel.write(message);
+        }
+    }
+
+    @Override
+    public ByteBuffer receive(int side) throws IOException {
+        SocketChannel channel = channels[side];
+        length.clear();
+        readFully(channel, length);
+        int size = length.getInt(0);
+        ByteBuffer buffer = received[side];
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, buffer.capacity() * 2)).order(ByteOrder.LITTLE_ENDIAN);
+            received[side] = buffer;
+        }
+        buffer.clear().limit(size);
+        readFully(channel, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Neighbor process closed the connection");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (SocketChannel channel : channels) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
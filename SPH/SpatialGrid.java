@@ -0,0 +1,45 @@
+import java.util.function.IntConsumer;
+
+// Griglia delle celle usata per la ricerca dei neighbor: gli indici delle particelle di ciascuna
+// cella sono contigui in sortedIndices, e ogni cella é identificata da un indice restituito da
+// getCellIndex. Le implementazioni sono CellGrid, densa su tutto il box, e HashedCellGrid, che
+// salva solo le celle occupate.
+// Per lo scheduler la griglia é divisa in tile di tileSize x tileSize celle: le particelle di una
+// tile vengono visitate insieme, e tile non adiacenti possono essere eseguite in parallelo
+interface SpatialGrid {
+    // Lato delle celle
+    double getCellSize();
+
+    // Coordinate della cella che contiene il punto (x, y)
+    int cellX(double x);
+
+    int cellY(double y);
+
+    // Indice della cella di coordinate (cellX, cellY), -1 se la cella é fuori dalla griglia o vuota
+    int getCellIndex(int cellX, int cellY);
+
+    // Indice nel vettore sortedIndices della prima particella della cella
+    int cellStart(int cell);
+
+    // Numero di particelle nella cella
+    int cellCount(int cell);
+
+    // Vettore degli indici delle particelle ordinati per cella
+    int[] sortedIndices();
+
+    // Metodi per ricostruire la griglia a partire dalle posizioni delle particelle
+    void build(ParticleStore store, TileScheduler scheduler);
+
+    void build(FloatParticleStore store, TileScheduler scheduler);
+
+    // Numero di tile della griglia, va chiamato dal thread che distribuisce le tile
+    int tileCount(int tileSize);
+
+    // Coordinate della tile, nelle unitá di tileSize celle
+    int tileX(int tile, int tileSize);
+
+    int tileY(int tile, int tileSize);
+
+    // Metodo per eseguire body su ogni particella della tile
+    void forEachInTile(int tile, int tileSize, IntConsumer body);
+}
@@ -0,0 +1,35 @@
+// Kernel spiky, usato per densitá e forza di pressione (equivalente a Utils.spiky e Utils.spikyGradient)
+class SpikyKernel extends Kernel {
+    private final double valueScale;
+    private final double gradientScale;
+
+    // Costruttore
+    public SpikyKernel(double smoothRadius) {
+        super(smoothRadius);
+        double fourthPower = squaredSmoothRadius * squaredSmoothRadius;
+        this.valueScale = 6.0 / (Math.PI * fourthPower);
+        this.gradientScale = 12.0 / (Math.PI * fourthPower);
+    }
+
+    // Costanti di normalizzazione, usate dal percorso vettoriale che valuta il kernel su piú coppie
+    public double getValueScale() {
+        return valueScale;
+    }
+
+    public double getGradientScale() {
+        return gradientScale;
+    }
+
+    @Override
+    public double value(double dist) {
+        if (dist < 0 || dist > smoothRadius) return 0;
+        double diff = smoothRadius - dist;
+        return diff * diff * valueScale;
+    }
+
+    @Override
+    public double gradient(double dist) {
+        if (dist <= 0 || dist > smoothRadius) return 0;
+        return gradientScale * (dist - smoothRadius);
+    }
+}
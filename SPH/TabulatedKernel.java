@@ -0,0 +1,70 @@
+// Versione tabulata di un kernel: valore e derivata vengono campionati una sola volta su una
+// griglia uniforme della distanza al quadrato in [0, smoothRadius^2] e poi interpolati
+// linearmente, cosí il loop dei neighbor non deve calcolare la radice quadrata
+class TabulatedKernel extends Kernel {
+    private final Kernel kernel;
+    private final double[] values;
+    private final double[] gradients;
+    private final double inverseStep;
+    private final int samples;
+
+    // Costruttore, samples é il numero di intervalli della tabella
+    public TabulatedKernel(Kernel kernel, int samples) {
+        super(kernel.smoothRadius);
+        this.kernel = kernel;
+        this.samples = samples;
+        this.values = new double[samples + 2];
+        this.gradients = new double[samples + 2];
+        double step = squaredSmoothRadius / samples;
+        this.inverseStep = 1.0 / step;
+        for (int k = 0; k <= samples; k++) {
+            double dist = Math.sqrt(k * step);
+            values[k] = kernel.value(dist);
+            gradients[k] = kernel.gradient(dist);
+        }
+        // a distanza nulla la derivata non é definita, si usa il limite per dist -> 0
+        gradients[0] = kernel.gradient(smoothRadius * 1e-9);
+        // l'ultimo campione ripete il bordo del supporto, cosí l'interpolazione a smoothRadius^2 resta nella tabella
+        values[samples + 1] = values[samples];
+        gradients[samples + 1] = gradients[samples];
+    }
+
+    // Kernel campionato
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    // Numero di intervalli della tabella
+    public int getSamples() {
+        return samples;
+    }
+
+    @Override
+    public double value(double dist) {
+        return valueSquared(dist * dist);
+    }
+
+    @Override
+    public double gradient(double dist) {
+        if (dist <= 0) return 0;
+        return gradientSquared(dist * dist);
+    }
+
+    @Override
+    public double valueSquared(double distSquared) {
+        if (distSquared < 0 || distSquared > squaredSmoothRadius) return 0;
+        double position = distSquared * inverseStep;
+        int k = (int) position;
+        double t = position - k;
+        return values[k] + (values[k + 1] - values[k]) * t;
+    }
+
+    @Override
+    public double gradientSquared(double distSquared) {
+        if (distSquared <= 0 || distSquared > squaredSmoothRadius) return 0;
+        double position = distSquared * inverseStep;
+        int k = (int) position;
+        double t = position - k;
+        return gradients[k] + (gradients[k + 1] - gradients[k]) * t;
+    }
+}
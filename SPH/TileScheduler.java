@@ -0,0 +1,249 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+// Scheduler dei passaggi di simulazione su un ForkJoinPool dedicato, al posto del common pool
+// usato dai parallel stream. Il numero di thread é scelto per istanza, cosí piú simulazioni sulla
+// stessa macchina possono avere ciascuna il proprio budget di core.
+// I passaggi sulle particelle vengono divisi in tile di tileSize x tileSize celle della griglia:
+// ogni task ForkJoin divide a metá il proprio intervallo di tile finché non ne resta una, e i thread
+// inattivi rubano le metá non ancora eseguite (work stealing). Con threads = 1 tutto viene eseguito
+// in sequenza nel thread chiamante, senza pool.
+// Per i passaggi che scrivono anche sui neighbor (coppie simmetriche) le tile vengono colorate
+// a scacchiera: tile dello stesso colore non condividono celle adiacenti e possono essere
+// eseguite in parallelo senza sincronizzazione, un colore dopo l'altro
+class TileScheduler {
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int tileSize;
+
+    // Costruttore, threads = 0 usa tutti i core disponibili, threads = 1 é la modalitá sequenziale
+    public TileScheduler(int threads, int tileSize) {
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.tileSize = Math.max(1, tileSize);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isSequential() {
+        return pool == null;
+    }
+
+    // Metodo per eseguire un'operazione nel pool dedicato, usato per i metodi della libreria standard
+    // (Arrays.parallelSort, Arrays.parallelPrefix) che si dividono nel pool del thread chiamante
+    public void invoke(Runnable task) {
+        if (pool == null) {
+            task.run();
+        } else {
+            pool.invoke(new RangeAction(0, 1, 1, index -> task.run()));
+        }
+    }
+
+    // Metodo per eseguire body su ogni indice in [from, to), diviso in blocchi contigui
+    public void forRange(int from, int to, IntConsumer body) {
+        if (pool == null || to - from < 2) {
+            for (int i = from; i < to; i++) {
+                body.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeAction(from, to, grain(to - from), body));
+        }
+    }
+
+    // Metodo per verificare se almeno un indice in [from, to) soddisfa predicate
+    public boolean anyMatch(int from, int to, IntPredicate predicate) {
+        return max(from, to, i -> predicate.test(i) ? 1 : 0) > 0;
+    }
+
+    // Metodo per calcolare il massimo di una function non negativa sugli indici in [from, to),
+    // 0 se l'intervallo é vuoto
+    public double max(int from, int to, IntToDoubleFunction function) {
+        if (pool == null || to - from < 2) {
+            double max = 0;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, function.applyAsDouble(i));
+            }
+            return max;
+        }
+        return pool.invoke(new RangeMaxTask(from, to, grain(to - from), function));
+    }
+
+    // Body di una riduzione su piú quantitá: riceve l'indice e i massimi parziali del proprio blocco,
+    // da aggiornare con Math.max
+    interface MaxAccumulator {
+        void accept(int index, double[] max);
+    }
+
+    // Metodo per calcolare in un solo passaggio il massimo di components quantitá non negative
+    // sugli indici in [from, to), ciascuna 0 se l'intervallo é vuoto
+    public double[] max(int from, int to, int components, MaxAccumulator body) {
+        if (pool == null || to - from < 2) {
+            double[] max = new double[components];
+            for (int i = from; i < to; i++) {
+                body.accept(i, max);
+            }
+            return max;
+        }
+        return pool.invoke(new RangeMaxArrayTask(from, to, grain(to - from), components, body));
+    }
+
+    // Metodo per eseguire body su ogni particella della griglia, tile per tile
+    public void forEachParticle(SpatialGrid grid, IntConsumer body) {
+        int tiles = grid.tileCount(tileSize);
+        if (pool == null) {
+            for (int tile = 0; tile < tiles; tile++) {
+                grid.forEachInTile(tile, tileSize, body);
+            }
+        } else {
+            pool.invoke(new RangeAction(0, tiles, 1, tile -> grid.forEachInTile(tile, tileSize, body)));
+        }
+    }
+
+    // Metodo per eseguire body su ogni particella della griglia, dove body puó scrivere anche sulle
+    // particelle delle celle adiacenti a quella della particella visitata.
+    // Con tile di almeno 2 celle bastano 2 colori per asse (4 in totale), con tile di una cella ne servono 3.
+    // Le tile di ciascun colore vengono raccolte prima di eseguirle, cosí la colorazione vale anche
+    // per le griglie sparse in cui le tile occupate non formano un rettangolo.
+    // Anche senza pool le tile vengono eseguite colore per colore: l'ordine in cui ogni particella
+    // riceve i contributi dei vicini é lo stesso con qualsiasi numero di thread, e cosí i risultati
+    public void forEachParticleColored(SpatialGrid grid, IntConsumer body) {
+        int tiles = grid.tileCount(tileSize);
+        int colors = tileSize >= 2 ? 2 : 3;
+        int[] colorTiles = new int[tiles];
+        for (int colorY = 0; colorY < colors; colorY++) {
+            for (int colorX = 0; colorX < colors; colorX++) {
+                int selected = 0;
+                for (int tile = 0; tile < tiles; tile++) {
+                    if (Math.floorMod(grid.tileX(tile, tileSize), colors) == colorX && Math.floorMod(grid.tileY(tile, tileSize), colors) == colorY) {
+                        colorTiles[selected++] = tile;
+                    }
+                }
+                if (selected == 0) continue;
+                if (pool == null) {
+                    for (int k = 0; k < selected; k++) {
+                        grid.forEachInTile(colorTiles[k], tileSize, body);
+                    }
+                } else {
+                    pool.invoke(new RangeAction(0, selected, 1, k -> grid.forEachInTile(colorTiles[k], tileSize, body)));
+                }
+            }
+        }
+    }
+
+    // Metodo per rilasciare i thread del pool
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // Helper method per la dimensione minima di un blocco, circa 8 blocchi per thread
+    private int grain(int size) {
+        return Math.max(1, size / (parallelism * 8));
+    }
+
+    // Task che divide a metá l'intervallo [from, to) fino a blocchi di dimensione grain.
+    // I task non vengono mai serializzati, quindi non definiscono serialVersionUID
+    @SuppressWarnings("serial")
+    private static class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final IntConsumer body;
+
+        RangeAction(int from, int to, int grain, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, middle, grain, body), new RangeAction(middle, to, grain, body));
+        }
+    }
+
+    // Task di riduzione al massimo con la stessa divisione di RangeAction
+    @SuppressWarnings("serial")
+    private static class RangeMaxTask extends RecursiveTask<Double> {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final IntToDoubleFunction function;
+
+        RangeMaxTask(int from, int to, int grain, IntToDoubleFunction function) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.function = function;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= grain) {
+                double max = 0;
+                for (int i = from; i < to; i++) {
+                    max = Math.max(max, function.applyAsDouble(i));
+                }
+                return max;
+            }
+            int middle = (from + to) >>> 1;
+            RangeMaxTask left = new RangeMaxTask(from, middle, grain, function);
+            left.fork();
+            double right = new RangeMaxTask(middle, to, grain, function).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+
+    // Task di riduzione al massimo su piú quantitá, ogni blocco accumula in un proprio vettore
+    @SuppressWarnings("serial")
+    private static class RangeMaxArrayTask extends RecursiveTask<double[]> {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final int components;
+        private final MaxAccumulator body;
+
+        RangeMaxArrayTask(int from, int to, int grain, int components, MaxAccumulator body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.components = components;
+            this.body = body;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= grain) {
+                double[] max = new double[components];
+                for (int i = from; i < to; i++) {
+                    body.accept(i, max);
+                }
+                return max;
+            }
+            int middle = (from + to) >>> 1;
+            RangeMaxArrayTask left = new RangeMaxArrayTask(from, middle, grain, components, body);
+            left.fork();
+            double[] max = new RangeMaxArrayTask(middle, to, grain, components, body).compute();
+            double[] leftMax = left.join();
+            for (int c = 0; c < components; c++) {
+                max[c] = Math.max(max[c], leftMax[c]);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Riproduzione di una traiettoria scritta da TrajectoryRecorder. Il player si presenta come una
+// Simulation, quindi il thread di simulazione e l'Animation lo usano senza modifiche: ogni newStep
+// legge e decodifica il frame successivo dal file invece di integrare il fluido, e a fine file la
+// riproduzione ricomincia dall'inizio. I frame vengono letti uno alla volta, quindi anche
+// registrazioni piú grandi della memoria possono essere riprodotte
+class TrajectoryPlayer implements Simulation {
+    private final Path path;
+    private final FileChannel channel;
+    private final int format;
+    private final int count;
+    private final int radius;
+    private final float boxWidth;
+    private final float boxHeight;
+    private final ByteBuffer frameHeader = ByteBuffer.allocate(TrajectoryRecorder.FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer payload = ByteBuffer.allocate(0);
+    private final int[] previous;
+    private final float[] positions;
+    private final float[] velocities;
+    private long frame = -1;
+
+    // Costruttore, legge e controlla l'header del file
+    public TrajectoryPlayer(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(TrajectoryRecorder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(header)) {
+            channel.close();
+            throw new IOException("Trajectory too short: " + path);
+        }
+        if (header.getInt() != TrajectoryRecorder.MAGIC) {
+            channel.close();
+            throw new IOException("Not a trajectory file: " + path);
+        }
+        int version = header.getInt();
+        if (version != TrajectoryRecorder.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported trajectory version " + version + ": " + path);
+        }
+        this.format = header.getInt();
+        this.count = header.getInt();
+        this.radius = header.getInt();
+        this.boxWidth = header.getFloat();
+        this.boxHeight = header.getFloat();
+        this.previous = new int[4 * count];
+        this.positions = new float[2 * count];
+        this.velocities = new float[2 * count];
+    }
+
+    // Metodo per leggere il frame successivo, tornando all'inizio del file alla fine della registrazione
+    @Override
+    public void newStep(double dt, int substeps, int windowWidth, int windowHeight) {
+        try {
+            if (!readFrame()) {
+                channel.position(TrajectoryRecorder.HEADER_SIZE);
+                Arrays.fill(previous, 0);
+                if (!readFrame()) {
+                    throw new IOException("Trajectory has no frames: " + path);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Metodo per ottenere il numero del frame letto per ultimo, come salvato dal recorder
+    public long getFrame() {
+        return frame;
+    }
+
+    // Metodo per chiudere il file
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Metodo per riempire il buffer fino al suo limite, restituisce false se il file finisce prima
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) return false;
+        }
+        buffer.flip();
+        return true;
+    }
+
+    // Metodo per leggere e decodificare un frame, restituisce false a fine file
+    private boolean readFrame() throws IOException {
+        frameHeader.clear();
+        if (!readFully(frameHeader)) return false;
+        frame = frameHeader.getLong();
+        int payloadBytes = frameHeader.getInt();
+        if (payload.capacity() < payloadBytes) {
+            payload = ByteBuffer.allocate(payloadBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        payload.clear().limit(payloadBytes);
+        if (!readFully(payload)) {
+            throw new IOException("Truncated trajectory frame " + frame + ": " + path);
+        }
+        decode(payload);
+        return true;
+    }
+
+    private void decode(ByteBuffer buffer) {
+        int values = 2 * count;
+        if (format == TrajectoryRecorder.FORMAT_RAW) {
+            buffer.asFloatBuffer().get(positions, 0, values).get(velocities, 0, values);
+            return;
+        }
+
+        float minX = buffer.getFloat();
+        float minY = buffer.getFloat();
+        float positionScaleX = (buffer.getFloat() - minX) / TrajectoryRecorder.POSITION_LEVELS;
+        float positionScaleY = (buffer.getFloat() - minY) / TrajectoryRecorder.POSITION_LEVELS;
+        float velocityScale = buffer.getFloat() / TrajectoryRecorder.VELOCITY_LEVELS;
+        for (int k = 0; k < 2 * values; k++) {
+            int quantized;
+            if (format == TrajectoryRecorder.FORMAT_QUANTIZED) {
+                quantized = k < values ? buffer.getShort() & 0xFFFF : buffer.getShort();
+            } else {
+                int zigzag = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get();
+                    zigzag |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                quantized = previous[k] + ((zigzag >>> 1) ^ -(zigzag & 1));
+                previous[k] = quantized;
+            }
+            if (k < values) {
+                positions[k] = (k & 1) == 0 ? minX + quantized * positionScaleX : minY + quantized * positionScaleY;
+            } else {
+                velocities[k - values] = quantized * velocityScale;
+            }
+        }
+    }
+
+    @Override
+    public void writeSnapshot(FrameSnapshot snapshot) {
+        snapshot.ensureCapacity(count);
+        snapshot.count = count;
+        snapshot.radius = radius;
+        System.arraycopy(positions, 0, snapshot.positions, 0, 2 * count);
+        System.arraycopy(velocities, 0, snapshot.velocities, 0, 2 * count);
+    }
+
+    // La registrazione non contiene il campo di densitá
+    @Override
+    public void writeDensityField(FrameSnapshot snapshot, int resolution, int windowWidth, int windowHeight) {
+        snapshot.densityWidth = 0;
+    }
+
+    @Override
+    public long getPhaseTotal(Phase phase) {
+        return 0;
+    }
+
+    @Override
+    public void resetPhaseTotals() {
+    }
+
+    @Override
+    public boolean isPhaseFused(Phase phase) {
+        return false;
+    }
+
+    @Override
+    public long getSubstepCount() {
+        return 0;
+    }
+
+    @Override
+    public int getParticleCount() {
+        return count;
+    }
+
+    @Override
+    public Vector2D returnBoundary() {
+        return new Vector2D(boxWidth, boxHeight);
+    }
+}
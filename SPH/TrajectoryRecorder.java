@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Registrazione della traiettoria su file: alla fine di ogni frame posizioni e velocitá vengono
+// copiate in una snapshot presa da un pool e passate a un thread dedicato, che le codifica e le
+// scrive. Il thread di simulazione non aspetta mai il disco: se tutte le snapshot del pool sono
+// ancora in coda il frame viene saltato e contato. Formato (little endian, versione 1):
+//   int magic "SPHT", int version, int format, int count, int radius, float boxWidth, float boxHeight,
+//   poi per ogni frame: long frame, int payloadBytes e payloadBytes byte codificati secondo format:
+//   raw       - 2 * count float di posizioni e 2 * count float di velocitá, interlacciati (x, y)
+//   quantized - float minX, minY, maxX, maxY, velocityScale, posizioni in 16 bit senza segno sul
+//               rettangolo che contiene le particelle del frame (che possono uscire di poco dal box)
+//               e velocitá in 16 bit con segno relative a velocityScale (il modulo massimo del frame)
+//   delta     - come quantized, ma ogni valore é la differenza dal frame precedente in varint zigzag
+class TrajectoryRecorder {
+    public static final int MAGIC = 0x53504854;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Float.BYTES;
+    public static final int FRAME_HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    public static final int FORMAT_RAW = 0;
+    public static final int FORMAT_QUANTIZED = 1;
+    public static final int FORMAT_DELTA = 2;
+    public static final int POSITION_LEVELS = 65535;
+    public static final int VELOCITY_LEVELS = 32767;
+    private static final int POOL_SIZE = 8;
+    private static final FrameSnapshot END = new FrameSnapshot();
+
+    private final Path path;
+    private final int format;
+    private final ConcurrentLinkedQueue<FrameSnapshot> free = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<FrameSnapshot> pending = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+    private final Thread writer;
+    private boolean started = false;
+    private int allocated = 0;
+    private long dropped = 0;
+    private long written = 0;
+    private float boxWidth;
+    private float boxHeight;
+    private volatile IOException failure = null;
+
+    // Costruttore, format é "raw", "quantized" o "delta"
+    public TrajectoryRecorder(Path path, String format) {
+        this.path = path;
+        this.format = parseFormat(format);
+        this.writer = new Thread(this::writeLoop, "sph-recorder");
+        this.writer.setDaemon(true);
+    }
+
+    // Metodo per convertire il nome del formato nel codice salvato nell'header
+    public static int parseFormat(String format) {
+        switch (format) {
+            case "raw":
+                return FORMAT_RAW;
+            case "quantized":
+                return FORMAT_QUANTIZED;
+            case "delta":
+                return FORMAT_DELTA;
+            default:
+                throw new IllegalArgumentException("Unknown trajectory format: " + format);
+        }
+    }
+
+    // Metodo da chiamare alla fine di ogni frame dal thread di simulazione
+    public void onFrame(Simulation simulation, long frame) {
+        if (failure != null) return;
+        if (!started) {
+            started = true;
+            Vector2D boundary = simulation.returnBoundary();
+            boxWidth = (float) boundary.x;
+            boxHeight = (float) boundary.y;
+            writer.start();
+        }
+        FrameSnapshot snapshot = free.poll();
+        if (snapshot == null) {
+            if (allocated == POOL_SIZE) {
+                dropped++;
+                return;
+            }
+            snapshot = new FrameSnapshot();
+            allocated++;
+        }
+        simulation.writeSnapshot(snapshot);
+        snapshot.frame = frame;
+        pending.add(snapshot);
+        written++;
+    }
+
+    // Metodo per scrivere i frame ancora in coda e chiudere il file
+    public void close() {
+        if (!started) return;
+        pending.add(END);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            System.err.println("Trajectory write failed: " + failure.getMessage());
+        } else {
+            System.out.println("Trajectory written to " + path + ": " + written + " frames, " + dropped + " dropped");
+        }
+    }
+
+    private void writeLoop() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = null;
+            int[] previous = null;
+            while (true) {
+                FrameSnapshot snapshot = pending.take();
+                if (snapshot == END) return;
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, FRAME_HEADER_SIZE + maxPayloadSize(snapshot.count))).order(ByteOrder.LITTLE_ENDIAN);
+                    previous = new int[4 * snapshot.count];
+                    buffer.putInt(MAGIC).putInt(VERSION).putInt(format).putInt(snapshot.count).putInt(snapshot.radius);
+                    buffer.putFloat(boxWidth).putFloat(boxHeight);
+                    writeFully(channel, buffer);
+                }
+                buffer.clear();
+                buffer.putLong(snapshot.frame).putInt(0);
+                encode(snapshot, buffer, previous);
+                buffer.putInt(Long.BYTES, buffer.position() - FRAME_HEADER_SIZE);
+                free.add(snapshot);
+                writeFully(channel, buffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Dimensione massima del payload di un frame: nel formato delta ogni valore occupa al piú 3 byte
+    private int maxPayloadSize(int count) {
+        switch (format) {
+            case FORMAT_RAW:
+                return 4 * count * Float.BYTES;
+            case FORMAT_QUANTIZED:
+                return 5 * Float.BYTES + 4 * count * Short.BYTES;
+            default:
+                return 5 * Float.BYTES + 4 * count * 3;
+        }
+    }
+
+    // Metodo per codificare posizioni e velocitá della snapshot nel buffer
+    private void encode(FrameSnapshot snapshot, ByteBuffer buffer, int[] previous) {
+        int values = 2 * snapshot.count;
+        float[] positions = snapshot.positions;
+        float[] velocities = snapshot.velocities;
+        if (format == FORMAT_RAW) {
+            buffer.asFloatBuffer().put(positions, 0, values).put(velocities, 0, values);
+            buffer.position(buffer.position() + 2 * values * Float.BYTES);
+            return;
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float velocityScale = 0;
+        for (int k = 0; k < values; k += 2) {
+            minX = Math.min(minX, positions[k]);
+            maxX = Math.max(maxX, positions[k]);
+            minY = Math.min(minY, positions[k + 1]);
+            maxY = Math.max(maxY, positions[k + 1]);
+            velocityScale = Math.max(velocityScale, Math.max(Math.abs(velocities[k]), Math.abs(velocities[k + 1])));
+        }
+        if (velocityScale == 0) velocityScale = 1;
+        buffer.putFloat(minX).putFloat(minY).putFloat(maxX).putFloat(maxY).putFloat(velocityScale);
+        float scaleX = maxX > minX ? POSITION_LEVELS / (maxX - minX) : 0;
+        float scaleY = maxY > minY ? POSITION_LEVELS / (maxY - minY) : 0;
+        for (int k = 0; k < 2 * values; k++) {
+            int quantized;
+            if (k < values) {
+                quantized = (k & 1) == 0 ? Math.round((positions[k] - minX) * scaleX) : Math.round((positions[k] - minY) * scaleY);
+                quantized = Math.max(0, Math.min(POSITION_LEVELS, quantized));
+            } else {
+                quantized = Math.round(velocities[k - values] / velocityScale * VELOCITY_LEVELS);
+            }
+            if (format == FORMAT_QUANTIZED) {
+                buffer.putShort((short) quantized);
+            } else {
+                int delta = quantized - previous[k];
+                previous[k] = quantized;
+                int zigzag = (delta << 1) ^ (delta >> 31);
+                while ((zigzag & ~0x7F) != 0) {
+                    buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+                    zigzag >>>= 7;
+                }
+                buffer.put((byte) zigzag);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+// Kernel Wendland C2 in 2D con supporto smoothRadius
+class WendlandKernel extends Kernel {
+    private final double valueScale;
+    private final double gradientScale;
+    private final double inverseRadius;
+
+    // Costruttore
+    public WendlandKernel(double smoothRadius) {
+        super(smoothRadius);
+        this.inverseRadius = 1.0 / smoothRadius;
+        this.valueScale = 7.0 / (Math.PI * squaredSmoothRadius);
+        this.gradientScale = -20.0 * valueScale * inverseRadius;
+    }
+
+    @Override
+    public double value(double dist) {
+        if (dist < 0 || dist > smoothRadius) return 0;
+        double q = dist * inverseRadius;
+        double diff = 1.0 - q;
+        double diffSquared = diff * diff;
+        return valueScale * diffSquared * diffSquared * (1.0 + 4.0 * q);
+    }
+
+    @Override
+    public double gradient(double dist) {
+        if (dist <= 0 || dist > smoothRadius) return 0;
+        double q = dist * inverseRadius;
+        double diff = 1.0 - q;
+        return gradientScale * q * diff * diff * diff;
+    }
+}
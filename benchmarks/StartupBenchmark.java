@@ -0,0 +1,54 @@
+import java.util.ArrayList;
+
+// Benchmark del tempo di avvio: per un numero crescente di particelle misura la costruzione
+// di Fluid e il primo frame (newStep), ovvero il tempo necessario a mostrare il primo frame.
+// Compilazione ed esecuzione dalla root del repository:
+//   javac -encoding UTF-8 -d out SPH/*.java benchmarks/StartupBenchmark.java
+//   java -cp out StartupBenchmark [numero di particelle...]
+public class StartupBenchmark {
+    public static void main(String[] args) {
+        int[] amounts = {10_000, 50_000, 100_000, 200_000};
+        if (args.length > 0) {
+            amounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                amounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // Stessi parametri di default di SPH.main
+        final double dt = 0.08;
+        final int substeps = 25;
+        final double mass = 10;
+        final double smoothRadius = 4;
+        final int radius = 1;
+        final int offset = 3;
+        final Vector2D gravity = new Vector2D(0, 0.02);
+
+        System.out.println("Particles    Setup (ms)    First Frame (ms)    Total (ms)");
+        for (int partAmount : amounts) {
+            int side = (int) Math.floor(Math.sqrt(partAmount));
+            int windowWidth = radius + side * offset + radius;
+            int windowHeight = windowWidth;
+            int gridWidth = (int) Math.ceil(windowWidth / smoothRadius);
+            int gridHeight = (int) Math.ceil(windowHeight / smoothRadius);
+
+            ArrayList<Particle> particles = new ArrayList<>();
+            for (int x = 0; x < side; x++) {
+                for (int y = 0; y < side; y++) {
+                    particles.add(new Particle(radius, new Vector2D(radius + x * offset, windowHeight - (radius + y * offset)), new Vector2D(0, 0), smoothRadius, mass, 1));
+                }
+            }
+
+            long startTime = System.nanoTime();
+            Fluid simulation = new Fluid(particles, mass * new SpikyKernel(smoothRadius).value(0), 100, 5, gravity, gridWidth, gridHeight);
+            long setupTime = System.nanoTime();
+            simulation.newStep(dt, substeps, windowWidth, windowHeight);
+            long firstFrameTime = System.nanoTime();
+
+            System.out.printf("%9d    %10.1f    %16.1f    %10.1f%n", particles.size(),
+                (setupTime - startTime) / 1_000_000.0,
+                (firstFrameTime - setupTime) / 1_000_000.0,
+                (firstFrameTime - startTime) / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Benchmark di weak scaling della simulazione distribuita: per un numero crescente di processi
+// esegue SPH con --processes, con lo stesso numero di particelle per processo, e confronta il tempo
+// per frame con quello della prima esecuzione. Con scaling ideale il tempo resta costante (efficienza 1);
+// ogni processo usa un solo thread, quindi servono almeno tanti core quanti processi.
+// Compilazione ed esecuzione dalla root del repository:
+//   javac -encoding UTF-8 -d out SPH/*.java benchmarks/WeakScalingBenchmark.java
+//   java -cp out WeakScalingBenchmark [numero di processi...]
+public class WeakScalingBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int[] processCounts = {1, 2, 4};
+        if (args.length > 0) {
+            processCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                processCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        final int frames = 40;
+        final int particlesPerProcess = 4900;
+
+        System.out.println("Processes    Particles    Frame (ms)    Halo (ms)    Efficiency");
+        double baseFrameTime = 0;
+        for (int run = 0; run < processCounts.length; run++) {
+            int processes = processCounts[run];
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("SPH");
+            // porta diversa per ogni esecuzione, cosí i socket della precedente non interferiscono
+            for (String argument : new String[] {"--headless", "true", "--threads", "1", "--frames", Integer.toString(frames),
+                "--particleamount", Integer.toString(particlesPerProcess), "--processes", Integer.toString(processes),
+                "--port", Integer.toString(47000 + 100 * run)}) {
+                command.add(argument);
+            }
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+            long particles = 0;
+            double frameTime = 0;
+            double haloTime = 0;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("Particles:")) {
+                        particles = Long.parseLong(value(line));
+                    } else if (line.startsWith("Frame Time (ms):")) {
+                        frameTime = Double.parseDouble(value(line));
+                    } else if (line.startsWith("Halo Exchange (ms):")) {
+                        haloTime = Double.parseDouble(value(line));
+                    }
+                }
+            }
+            if (process.waitFor() != 0 || frameTime == 0) {
+                System.out.printf("%9d    failed%n", processes);
+                continue;
+            }
+            if (baseFrameTime == 0) {
+                baseFrameTime = frameTime;
+            }
+
+            System.out.printf("%9d    %9d    %10.1f    %9.1f    %10.2f%n", processes, particles, frameTime, haloTime, baseFrameTime / frameTime);
+        }
+    }
+
+    // Helper method per leggere il valore di una riga del report
+    private static String value(String line) {
+        return line.substring(line.indexOf(':') + 1).trim();
+    }
+}
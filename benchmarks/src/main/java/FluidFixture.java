@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+
+// Scena di benchmark per il motore SPH. I benchmark JMH devono stare in un package, mentre il
+// motore é nel package di default e non puó essere importato: la fixture vive nel package di
+// default, viene istanziata via reflection e restituisce ciascuna fase come Runnable.
+// Il fluido usa un TileScheduler con esattamente il numero di thread richiesto
+public class FluidFixture {
+    private static final double DT = 0.08;
+    private static final int SUBSTEPS = 25;
+    private static final double MASS = 10;
+    private static final int RADIUS = 1;
+    private static final int OFFSET = 3;
+
+    private final Fluid simulation;
+    private final Vector2D gravity = new Vector2D(0, 0.02);
+    private final int windowWidth;
+    private final int windowHeight;
+
+    // Costruttore, threads = 0 usa tutti i core disponibili, symmetricPairs attiva la lista half.
+    // La scena é la stessa di SPH.main e viene fatta evolvere per warmupFrames frame,
+    // cosí le fasi vengono misurate su un fluido giá assestato e non sul reticolo iniziale
+    public FluidFixture(int particleAmount, double smoothRadius, int threads, boolean symmetricPairs, int warmupFrames) {
+        int side = (int) Math.floor(Math.sqrt(particleAmount));
+        this.windowWidth = RADIUS + side * OFFSET + RADIUS;
+        this.windowHeight = windowWidth;
+        int gridWidth = (int) Math.ceil(windowWidth / smoothRadius);
+        int gridHeight = (int) Math.ceil(windowHeight / smoothRadius);
+
+        ArrayList<Particle> particles = new ArrayList<>();
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                particles.add(new Particle(RADIUS, new Vector2D(RADIUS + x * OFFSET, windowHeight - (RADIUS + y * OFFSET)), new Vector2D(0, 0), smoothRadius, MASS, 1));
+            }
+        }
+        this.simulation = new Fluid(particles, MASS * new SpikyKernel(smoothRadius).value(0), 100, 5, gravity, gridWidth, gridHeight);
+        simulation.setScheduler(new TileScheduler(threads, 8));
+        simulation.setSymmetricPairs(symmetricPairs);
+
+        for (int frame = 0; frame < warmupFrames; frame++) {
+            simulation.newStep(DT, SUBSTEPS, windowWidth, windowHeight);
+        }
+        simulation.updateNeighborList();
+    }
+
+    // Metodo che restituisce la fase richiesta come Runnable
+    public Runnable phase(String name) {
+        switch (name) {
+            case "update":
+                return () -> simulation.updateParallel(windowWidth, windowHeight, DT, gravity);
+            case "density":
+                return simulation::calcDensityParallel;
+            case "forces":
+                return simulation::applyMergedForcesParallel;
+            case "cells":
+                return simulation::updateCellMatrix;
+            case "neighborList":
+                return () -> {
+                    simulation.invalidateNeighborList();
+                    simulation.updateNeighborList();
+                };
+            case "getNeighbors":
+                return this::queryAllNeighbors;
+            default:
+                throw new IllegalArgumentException("Unknown phase: " + name);
+        }
+    }
+
+    // Metodo che esegue una ricerca getNeighbors per ogni particella, come faceva il motore
+    // prima delle liste di Verlet
+    private void queryAllNeighbors() {
+        ArrayList<Particle> particles = simulation.getParticles();
+        simulation.getScheduler().forRange(0, particles.size(), i -> {
+            Particle p = particles.get(i);
+            simulation.getNeighbors(p.position.x, p.position.y);
+        });
+    }
+
+    // Metodo per rilasciare i thread del pool al termine del benchmark
+    public void close() {
+        simulation.getScheduler().shutdown();
+    }
+
+    public int getParticleCount() {
+        return simulation.getParticleCount();
+    }
+}
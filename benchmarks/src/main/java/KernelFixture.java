@@ -0,0 +1,32 @@
+import java.util.function.DoubleUnaryOperator;
+
+// Fixture per i benchmark delle funzioni kernel: come FluidFixture vive nel package di default
+// e restituisce ciascun kernel come DoubleUnaryOperator della distanza
+public class KernelFixture {
+    public static DoubleUnaryOperator kernel(String name, double smoothRadius) {
+        switch (name) {
+            case "utilsPoly6":
+                return dist -> Utils.poly6(dist, smoothRadius);
+            case "utilsPoly6Gradient":
+                return dist -> Utils.poly6Gradient(dist, smoothRadius);
+            case "utilsSpiky":
+                return dist -> Utils.spiky(dist, smoothRadius);
+            case "utilsSpikyGradient":
+                return dist -> Utils.spikyGradient(dist, smoothRadius);
+            case "spiky": {
+                Kernel kernel = new SpikyKernel(smoothRadius);
+                return kernel::value;
+            }
+            case "spikyGradient": {
+                Kernel kernel = new SpikyKernel(smoothRadius);
+                return kernel::gradient;
+            }
+            case "tabulatedSpikySquared": {
+                Kernel kernel = new TabulatedKernel(new SpikyKernel(smoothRadius), 4096);
+                return dist -> kernel.valueSquared(dist * dist);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + name);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package sph.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmark di un substep completo di Fluid e di ciascuna delle sue fasi.
+// Il motore é nel package di default, quindi viene raggiunto tramite FluidFixture,
+// caricata via reflection, che restituisce ogni fase come Runnable
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FluidBenchmark {
+    @Param({"10000", "50000", "100000"})
+    public int particles;
+
+    @Param({"3", "4", "6"})
+    public double smoothRadius;
+
+    // Thread del pool, 0 = tutti i core disponibili
+    @Param({"1", "4", "0"})
+    public int threads;
+
+    // Valutazione simmetrica delle coppie con la lista dei neighbor half
+    @Param({"false", "true"})
+    public boolean symmetricPairs;
+
+    @Param({"5"})
+    public int warmupFrames;
+
+    private Object fixture;
+    private Runnable update;
+    private Runnable density;
+    private Runnable forces;
+    private Runnable cells;
+    private Runnable neighborList;
+    private Runnable getNeighbors;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        fixture = Class.forName("FluidFixture")
+            .getConstructor(int.class, double.class, int.class, boolean.class, int.class)
+            .newInstance(particles, smoothRadius, threads, symmetricPairs, warmupFrames);
+        update = phase("update");
+        density = phase("density");
+        forces = phase("forces");
+        cells = phase("cells");
+        neighborList = phase("neighborList");
+        getNeighbors = phase("getNeighbors");
+    }
+
+    private Runnable phase(String name) throws ReflectiveOperationException {
+        return (Runnable) fixture.getClass().getMethod("phase", String.class).invoke(fixture, name);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws ReflectiveOperationException {
+        fixture.getClass().getMethod("close").invoke(fixture);
+    }
+
+    @Benchmark
+    public void updateParallel() {
+        update.run();
+    }
+
+    @Benchmark
+    public void calcDensityParallel() {
+        density.run();
+    }
+
+    @Benchmark
+    public void applyMergedForcesParallel() {
+        forces.run();
+    }
+
+    @Benchmark
+    public void updateCellMatrix() {
+        cells.run();
+    }
+
+    @Benchmark
+    public void neighborListBuild() {
+        neighborList.run();
+    }
+
+    @Benchmark
+    public void getNeighbors() {
+        getNeighbors.run();
+    }
+}
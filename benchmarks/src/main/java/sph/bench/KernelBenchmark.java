@@ -0,0 +1,61 @@
+package sph.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmark delle funzioni kernel, sia i metodi statici di Utils sia gli oggetti Kernel precalcolati.
+// Ogni invocazione valuta il kernel su un insieme fisso di distanze distribuite sul supporto,
+// e i risultati vengono sommati perché il JIT non possa eliminare le chiamate
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"utilsPoly6", "utilsPoly6Gradient", "utilsSpiky", "utilsSpikyGradient",
+            "spiky", "spikyGradient", "tabulatedSpikySquared"})
+    public String kernel;
+
+    @Param({"3", "4", "6"})
+    public double smoothRadius;
+
+    private DoubleUnaryOperator function;
+    private final double[] distances = new double[SAMPLES];
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        function = (DoubleUnaryOperator) Class.forName("KernelFixture")
+            .getMethod("kernel", String.class, double.class)
+            .invoke(null, kernel, smoothRadius);
+        for (int k = 0; k < SAMPLES; k++) {
+            distances[k] = smoothRadius * k / (SAMPLES - 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double evaluate() {
+        double sum = 0;
+        for (double dist : distances) {
+            sum += function.applyAsDouble(dist);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,178 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Valutazione vettoriale dei kernel spiky e poly6 con la Vector API (JDK 17+, modulo incubator).
+// Per ogni particella i dati dei neighbor entro smoothRadius vengono raccolti in vettori contigui,
+// poi radici, kernel e gradienti vengono calcolati per SPECIES.length() coppie alla volta;
+// gli ultimi neighbor che non riempiono un vettore usano le formule scalari.
+// Il gather con indexMap della Vector API e le operazioni mascherate sono risultati piú lenti
+// della compattazione sul JDK 17.
+// Non fa parte dei sorgenti compilati con il motore, va compilata a parte:
+//   javac -d out SPH/*.java
+//   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+//   java --add-modules jdk.incubator.vector -cp out SPH --vectorkernels true
+class VectorPairEvaluator implements PairEvaluator {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final double smoothRadius;
+    private final double squaredSmoothRadius;
+    private final double spikyValueScale;
+    private final double spikyGradientScale;
+    private final double poly6GradientScale;
+
+    // Costruttore, le costanti vengono prese dai kernel scalari
+    public VectorPairEvaluator(SpikyKernel pressureKernel, Poly6Kernel viscosityKernel) {
+        if (pressureKernel.smoothRadius != viscosityKernel.smoothRadius) {
+            throw new IllegalArgumentException("Kernels with different smoothRadius");
+        }
+        this.smoothRadius = pressureKernel.smoothRadius;
+        this.squaredSmoothRadius = smoothRadius * smoothRadius;
+        this.spikyValueScale = pressureKernel.getValueScale();
+        this.spikyGradientScale = pressureKernel.getGradientScale();
+        this.poly6GradientScale = viscosityKernel.getGradientScale();
+    }
+
+    // Vettori di lavoro di ciascun thread: i neighbor entro smoothRadius vengono compattati qui,
+    // cosí le lane vengono caricate da memoria contigua e non servono maschere
+    private static final class Scratch {
+        double[] rx = new double[0];
+        double[] ry = new double[0];
+        double[] distSquared = new double[0];
+        double[] volume = new double[0];
+        double[] pressure = new double[0];
+        double[] relativeVelocityX = new double[0];
+        double[] relativeVelocityY = new double[0];
+
+        void ensureCapacity(int size) {
+            if (rx.length < size) {
+                int capacity = size + SPECIES.length();
+                rx = new double[capacity];
+                ry = new double[capacity];
+                distSquared = new double[capacity];
+                volume = new double[capacity];
+                pressure = new double[capacity];
+                relativeVelocityX = new double[capacity];
+                relativeVelocityY = new double[capacity];
+            }
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public double density(ParticleStore store, int[] neighbors, int start, int end, int i) {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] mass = store.mass;
+        Scratch s = scratch.get();
+        s.ensureCapacity(end - start);
+        final double[] distSquared = s.distSquared;
+        final double[] volume = s.volume;
+        double xi = positionX[i];
+        double yi = positionY[i];
+        int size = 0;
+        for (int k = start; k < end; k++) {
+            int j = neighbors[k];
+            double rx = positionX[j] - xi;
+            double ry = positionY[j] - yi;
+            double d2 = rx * rx + ry * ry;
+            if (d2 > squaredSmoothRadius) continue;
+            distSquared[size] = d2;
+            volume[size] = mass[j];
+            size++;
+        }
+        int lanes = SPECIES.length();
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        int k = 0;
+        for (; k + lanes <= size; k += lanes) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, distSquared, k).sqrt().neg().add(smoothRadius);
+            DoubleVector m = DoubleVector.fromArray(SPECIES, volume, k);
+            sum = diff.mul(diff).mul(m).add(sum);
+        }
+        double densitySum = sum.reduceLanes(VectorOperators.ADD) * spikyValueScale;
+        for (; k < size; k++) {
+            double diff = smoothRadius - Math.sqrt(distSquared[k]);
+            densitySum += volume[k] * diff * diff * spikyValueScale;
+        }
+        return densitySum;
+    }
+
+    @Override
+    public void applyForces(ParticleStore store, int[] neighbors, int start, int end, int i, double viscosityConstant) {
+        final double[] positionX = store.positionX;
+        final double[] positionY = store.positionY;
+        final double[] velocityX = store.velocityX;
+        final double[] velocityY = store.velocityY;
+        final double[] mass = store.mass;
+        final double[] density = store.density;
+        final double[] pressure = store.pressure;
+        Scratch s = scratch.get();
+        s.ensureCapacity(end - start);
+        double xi = positionX[i];
+        double yi = positionY[i];
+        double vxi = velocityX[i];
+        double vyi = velocityY[i];
+        double pi = pressure[i];
+
+        // a distanza nulla (compresa la particella stessa) entrambi i gradienti sono nulli
+        int size = 0;
+        for (int k = start; k < end; k++) {
+            int j = neighbors[k];
+            double rx = positionX[j] - xi;
+            double ry = positionY[j] - yi;
+            double d2 = rx * rx + ry * ry;
+            if (d2 > squaredSmoothRadius || d2 <= 0) continue;
+            s.rx[size] = rx;
+            s.ry[size] = ry;
+            s.distSquared[size] = d2;
+            s.volume[size] = mass[j] / density[j];
+            s.pressure[size] = pressure[j];
+            s.relativeVelocityX[size] = velocityX[j] - vxi;
+            s.relativeVelocityY[size] = velocityY[j] - vyi;
+            size++;
+        }
+
+        int lanes = SPECIES.length();
+        DoubleVector pressureForceX = DoubleVector.zero(SPECIES);
+        DoubleVector pressureForceY = DoubleVector.zero(SPECIES);
+        DoubleVector viscosityForceX = DoubleVector.zero(SPECIES);
+        DoubleVector viscosityForceY = DoubleVector.zero(SPECIES);
+        int k = 0;
+        for (; k + lanes <= size; k += lanes) {
+            DoubleVector distSquared = DoubleVector.fromArray(SPECIES, s.distSquared, k);
+            DoubleVector dist = distSquared.sqrt();
+            DoubleVector volume = DoubleVector.fromArray(SPECIES, s.volume, k);
+
+            DoubleVector diff = distSquared.neg().add(squaredSmoothRadius);
+            DoubleVector viscosityScale = diff.mul(diff).mul(dist).mul(volume);
+            viscosityForceX = DoubleVector.fromArray(SPECIES, s.relativeVelocityX, k).fma(viscosityScale, viscosityForceX);
+            viscosityForceY = DoubleVector.fromArray(SPECIES, s.relativeVelocityY, k).fma(viscosityScale, viscosityForceY);
+
+            DoubleVector gradient = dist.sub(smoothRadius);
+            DoubleVector pressureMiddle = DoubleVector.fromArray(SPECIES, s.pressure, k).add(pi);
+            DoubleVector pressureScale = pressureMiddle.mul(gradient).mul(volume).div(dist);
+            pressureForceX = DoubleVector.fromArray(SPECIES, s.rx, k).fma(pressureScale, pressureForceX);
+            pressureForceY = DoubleVector.fromArray(SPECIES, s.ry, k).fma(pressureScale, pressureForceY);
+        }
+        // le costanti comuni a tutte le coppie vengono applicate una volta sola alle somme
+        double viscosityConstantScale = -viscosityConstant * poly6GradientScale;
+        double pressureConstantScale = 0.5 * spikyGradientScale;
+        double sumViscosityX = viscosityForceX.reduceLanes(VectorOperators.ADD) * viscosityConstantScale;
+        double sumViscosityY = viscosityForceY.reduceLanes(VectorOperators.ADD) * viscosityConstantScale;
+        double sumPressureX = pressureForceX.reduceLanes(VectorOperators.ADD) * pressureConstantScale;
+        double sumPressureY = pressureForceY.reduceLanes(VectorOperators.ADD) * pressureConstantScale;
+        for (; k < size; k++) {
+            double dist = Math.sqrt(s.distSquared[k]);
+            double diff = squaredSmoothRadius - s.distSquared[k];
+            double viscosityScale = viscosityConstantScale * diff * diff * dist * s.volume[k];
+            sumViscosityX += s.relativeVelocityX[k] * viscosityScale;
+            sumViscosityY += s.relativeVelocityY[k] * viscosityScale;
+            double pressureScale = pressureConstantScale * (pi + s.pressure[k]) * (dist - smoothRadius) * s.volume[k] / dist;
+            sumPressureX += s.rx[k] * pressureScale;
+            sumPressureY += s.ry[k] * pressureScale;
+        }
+        store.applyForce(i, sumViscosityX, sumViscosityY);
+        store.applyForce(i, sumPressureX, sumPressureY);
+    }
+}